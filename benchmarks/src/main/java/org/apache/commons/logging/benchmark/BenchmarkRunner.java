@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.benchmark;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with 1, 4 and as many threads as there are processors, with the GC profiler to report the
+ * allocation rate. The results of each run are written to {@code benchmarks-<threads>-threads.json} so they can be
+ * compared with a baseline.
+ * <p>
+ * {@link GetLogBenchmark} sets the number of threads of each of its benchmarks, which a thread count given here would
+ * override, so it is left out of the sweep and run once on its own with the results written to
+ * {@code benchmarks-get-log.json}.
+ * </p>
+ * <p>
+ * The benchmarks measure the locally built project, so it must be installed first with {@code mvn install} from the
+ * parent directory, then the benchmarks are built with {@code mvn package} from this directory.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar org.apache.commons.logging.benchmark.BenchmarkRunner [regex]}, where
+ * the optional regular expression selects the benchmarks to run.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class BenchmarkRunner {
+
+    public static void main(final String[] args) throws RunnerException {
+        final String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*";
+        final Set<Integer> threadCounts = new TreeSet<>();
+        threadCounts.add(1);
+        threadCounts.add(4);
+        threadCounts.add(Runtime.getRuntime().availableProcessors());
+        final String getLog = Pattern.quote(GetLogBenchmark.class.getName() + ".");
+        for (Integer threads : threadCounts) {
+            run(new OptionsBuilder()
+                    .include(include)
+                    .exclude(getLog)
+                    .threads(threads), "benchmarks-" + threads + "-threads.json");
+        }
+        // Excludes everything but the GetLogBenchmark, which uses the threads of its @Threads annotations
+        run(new OptionsBuilder()
+                .include(include)
+                .exclude("^(?!" + getLog + ")"), "benchmarks-get-log.json");
+    }
+
+    private static void run(final ChainedOptionsBuilder builder, final String result) throws RunnerException {
+        final Options options = builder
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        try {
+            new Runner(options).run();
+        } catch (NoBenchmarksException ignore) {
+            // The regular expression does not select any of these benchmarks
+        }
+    }
+}
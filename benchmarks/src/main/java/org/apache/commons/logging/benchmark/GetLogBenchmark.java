@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.impl.JBossLogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of {@link LogFactory#getLog(Class)} without the cache, which creates a new log each time, with the
+ * cached lookups by name and by type.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.logging.manager=org.jboss.logmanager.LogManager")
+public class GetLogBenchmark {
+
+    /**
+     * The lookup to benchmark:
+     * <ul>
+     * <li>{@code uncached} - {@link LogFactory#getLog(Class)} with the cache disabled</li>
+     * <li>{@code name} - {@link LogFactory#getLog(String)} with the cache enabled</li>
+     * <li>{@code class} - {@link LogFactory#getLog(Class)} with the cache enabled</li>
+     * </ul>
+     */
+    @Param({"uncached", "name", "class"})
+    public String lookup;
+
+    private boolean byName;
+    private final String name = GetLogBenchmark.class.getName();
+
+    @Setup
+    public void setup() {
+        if (!"uncached".equals(lookup)) {
+            LogFactory.getFactory().setAttribute(JBossLogFactory.CACHE_PROPERTY, "true");
+        }
+        byName = "name".equals(lookup);
+    }
+
+    @TearDown
+    public void tearDown() {
+        LogFactory.releaseAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Log getLog1() {
+        return getLog();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Log getLog8() {
+        return getLog();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Log getLog64() {
+        return getLog();
+    }
+
+    private Log getLog() {
+        return byName ? LogFactory.getLog(name) : LogFactory.getLog(GetLogBenchmark.class);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.impl.NoOpLog;
+import org.jboss.logmanager.ExtHandler;
+import org.jboss.logmanager.ExtLogRecord;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the {@code JBossLog} log methods and level checks, with {@link NoOpLog} as the baseline. The
+ * enabled calls are published to a handler which discards the record, so only the cost of the bridge and the log
+ * manager is measured.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.logging.manager=org.jboss.logmanager.LogManager")
+public class LogCallBenchmark {
+
+    private final String message = "Test message";
+    private final Throwable cause = new IllegalStateException("Test cause");
+    private Logger logger;
+    private Log log;
+    private Log noOpLog;
+
+    @Setup
+    public void setup() {
+        logger = Logger.getLogger(LogCallBenchmark.class.getName());
+        logger.setLevel(Level.INFO);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new ExtHandler() {
+            @Override
+            protected void doPublish(final ExtLogRecord record) {
+                // Discard the record
+            }
+        });
+        log = LogFactory.getLog(LogCallBenchmark.class);
+        noOpLog = new NoOpLog();
+    }
+
+    @Benchmark
+    public void debugDisabled() {
+        log.debug(message);
+    }
+
+    @Benchmark
+    public boolean isDebugEnabled() {
+        return log.isDebugEnabled();
+    }
+
+    @Benchmark
+    public boolean isInfoEnabled() {
+        return log.isInfoEnabled();
+    }
+
+    @Benchmark
+    public void infoEnabled() {
+        log.info(message);
+    }
+
+    @Benchmark
+    public void errorEnabledWithThrowable() {
+        log.error(message, cause);
+    }
+
+    @Benchmark
+    public void noOpLog() {
+        noOpLog.info(message);
+    }
+
+    @Benchmark
+    public boolean noOpLogIsInfoEnabled() {
+        return noOpLog.isInfoEnabled();
+    }
+}
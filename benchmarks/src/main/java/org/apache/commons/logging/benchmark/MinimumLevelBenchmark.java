@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of trace calls which are disabled by the JVM wide minimum level compared to trace calls disabled
+ * by the log manager. On Java 9 or higher calls below the minimum level should cost the same as the empty baseline.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.logging.manager=org.jboss.logmanager.LogManager")
+public class MinimumLevelBenchmark {
+    private static final String MINIMUM_LEVEL = "-Dorg.apache.commons.logging.impl.JBossLogFactory.minimumLevel=info";
+
+    private Log log;
+    private final String message = "Test message";
+
+    @Setup
+    public void setup() {
+        Logger.getLogger("").setLevel(Level.INFO);
+        log = LogFactory.getLog(MinimumLevelBenchmark.class);
+    }
+
+    @Benchmark
+    public void baseline(final Blackhole blackhole) {
+        blackhole.consume(message);
+    }
+
+    @Benchmark
+    public void traceDisabledByLogManager(final Blackhole blackhole) {
+        blackhole.consume(message);
+        log.trace(message);
+    }
+
+    @Benchmark
+    public boolean isTraceEnabledDisabledByLogManager() {
+        return log.isTraceEnabled();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Djava.util.logging.manager=org.jboss.logmanager.LogManager", MINIMUM_LEVEL})
+    public void traceBelowMinimumLevel(final Blackhole blackhole) {
+        blackhole.consume(message);
+        log.trace(message);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Djava.util.logging.manager=org.jboss.logmanager.LogManager", MINIMUM_LEVEL})
+    public boolean isTraceEnabledBelowMinimumLevel() {
+        return log.isTraceEnabled();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.impl.SimpleLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of formatting and writing {@link SimpleLog} messages. Messages go through the same rendering path
+ * as in production and are written to {@code /dev/null} through the buffered log writer, so the benchmarks require a
+ * Unix like operating system. As {@code SimpleLog} reads its configuration once, the date and time, asynchronous and
+ * memory mapped variants each run in a fork with their own settings. The memory mapped variant writes to
+ * {@code simplelog-benchmark.log} in the working directory, which is rolled at 64 MB and only one rolled file is
+ * retained.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = SimpleLogBenchmark.LOG_FILE)
+public class SimpleLogBenchmark {
+    private static final String PREFIX = "-Dorg.apache.commons.logging.simplelog.";
+    // Not private as the classes generated by JMH copy the class annotations
+    static final String LOG_FILE = PREFIX + "logFile=/dev/null";
+    private static final String SHOW_DATE_TIME = PREFIX + "showdatetime=true";
+    private static final String ASYNC = PREFIX + "async=true";
+    private static final String MAPPED_FILE = PREFIX + "mappedFile=simplelog-benchmark.log";
+    private static final String MAX_FILE_SIZE = PREFIX + "maxFileSize=64m";
+    private static final String MAX_ROLLED_FILES = PREFIX + "maxRolledFiles=1";
+
+    private final String message = "Test message";
+    private final Throwable cause = new IllegalStateException("Test cause");
+    private SimpleLog log;
+
+    @Setup
+    public void setup() {
+        log = new SimpleLog(SimpleLogBenchmark.class.getName());
+    }
+
+    @Benchmark
+    public void info() {
+        log.info(message);
+    }
+
+    @Benchmark
+    public void debugDisabled() {
+        log.debug(message);
+    }
+
+    @Benchmark
+    public void errorWithThrowable() {
+        log.error(message, cause);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {LOG_FILE, SHOW_DATE_TIME})
+    public void infoWithDateTime() {
+        log.info(message);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {LOG_FILE, SHOW_DATE_TIME})
+    public void errorWithThrowableAndDateTime() {
+        log.error(message, cause);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {LOG_FILE, ASYNC})
+    public void infoAsync() {
+        log.info(message);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {MAPPED_FILE, MAX_FILE_SIZE, MAX_ROLLED_FILES})
+    public void infoMapped() {
+        log.info(message);
+    }
+}
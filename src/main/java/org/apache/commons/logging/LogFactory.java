@@ -19,9 +19,21 @@
 
 package org.apache.commons.logging;
 
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.impl.JBossLogFactory;
+import org.apache.commons.logging.impl.LogLevels;
 
 /**
  * <strong>Note this implementation only works with JBoss Log Manager. No configuration can be done via this
@@ -352,11 +364,19 @@ public abstract class LogFactory {
      * instances that have been associated with the specified class loader
      * (if any), after calling the instance method <code>release()</code> on
      * each of them.
+     * <p>
+     * The {@link JBossLogFactory} only releases the cached {@link Log} instances
+     * associated with the class loader. See {@link JBossLogFactory#releaseLogs(ClassLoader)}.
      *
      * @param classLoader ClassLoader for which to release the LogFactory
      */
     public static void release(ClassLoader classLoader) {
-        getFactory().release();
+        final LogFactory factory = getFactory();
+        if (factory instanceof JBossLogFactory) {
+            ((JBossLogFactory) factory).releaseLogs(classLoader);
+        } else {
+            factory.release();
+        }
     }
 
     /**
@@ -371,6 +391,86 @@ public abstract class LogFactory {
         getFactory().release();
     }
 
+    /**
+     * Creates the logs for the names or classes, and resolves their enabled levels, in parallel. Logs created at
+     * deployment time this way do not add to the latency of the first request which uses them.
+     * <p>
+     * The logs are created with the context class loader of the calling thread. They are only retained if the
+     * factory caches logs, for the {@link JBossLogFactory} when the {@link JBossLogFactory#CACHE_PROPERTY cache} is
+     * enabled. Otherwise only the loggers of the log manager are created.
+     * </p>
+     *
+     * @param logs the names, as {@link String strings}, or {@link Class classes} of the logs to create
+     *
+     * @return the timings of the warm-up
+     *
+     * @throws IllegalArgumentException  if an element is not a string or class
+     * @throws LogConfigurationException if a log could not be created or the calling thread was interrupted
+     */
+    public static WarmUpResult warmUp(final Collection<?> logs) throws LogConfigurationException {
+        final Object[] entries = logs.toArray();
+        for (Object entry : entries) {
+            if (!(entry instanceof String) && !(entry instanceof Class)) {
+                throw new IllegalArgumentException("Expected a String or Class but found " + entry);
+            }
+        }
+        if (entries.length == 0) {
+            return new WarmUpResult(0, 0, 0L, 0L, null, 0L);
+        }
+        final LogFactory factory = getFactory();
+        final int threads = Math.min(entries.length, Runtime.getRuntime().availableProcessors());
+        final long[] nanos = new long[entries.length];
+        final AtomicInteger next = new AtomicInteger();
+        final long start = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new WarmUpThreadFactory(Thread.currentThread().getContextClassLoader()));
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Each thread takes the next entry so a slow log does not hold up a whole partition
+                        int index;
+                        while ((index = next.getAndIncrement()) < entries.length) {
+                            final long logStart = System.nanoTime();
+                            final Object entry = entries[index];
+                            final Log log = entry instanceof Class ? factory.getInstance((Class<?>) entry) : factory.getInstance((String) entry);
+                            LogLevels.enabledLevels(log);
+                            nanos[index] = System.nanoTime() - logStart;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof LogConfigurationException) {
+                throw (LogConfigurationException) cause;
+            }
+            throw new LogConfigurationException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LogConfigurationException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        final long elapsed = System.nanoTime() - start;
+        long total = 0L;
+        int slowest = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            total += nanos[i];
+            if (nanos[i] > nanos[slowest]) {
+                slowest = i;
+            }
+        }
+        final Object slowestEntry = entries[slowest];
+        return new WarmUpResult(entries.length, threads, elapsed, total,
+                slowestEntry instanceof Class ? ((Class<?>) slowestEntry).getName() : (String) slowestEntry, nanos[slowest]);
+    }
+
     // ------------------------------------------------------ Protected Methods
 
     /**
@@ -570,4 +670,28 @@ public abstract class LogFactory {
             return o.getClass().getName() + "@" + System.identityHashCode(o);
         }
     }
+
+    private static class WarmUpThreadFactory implements ThreadFactory {
+        private final ClassLoader contextClassLoader;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WarmUpThreadFactory(final ClassLoader contextClassLoader) {
+            this.contextClassLoader = contextClassLoader;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final String name = "commons-logging-warm-up-" + count.incrementAndGet();
+            return AccessController.doPrivileged(new PrivilegedAction<Thread>() {
+                @Override
+                public Thread run() {
+                    final Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    // The logs are associated with the context class loader of the caller
+                    thread.setContextClassLoader(contextClassLoader);
+                    return thread;
+                }
+            });
+        }
+    }
 }
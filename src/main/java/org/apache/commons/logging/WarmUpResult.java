@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timings of a {@linkplain LogFactory#warmUp(java.util.Collection) warm-up}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class WarmUpResult {
+    private final int count;
+    private final int threads;
+    private final long elapsedNanos;
+    private final long totalNanos;
+    private final String slowestName;
+    private final long slowestNanos;
+
+    WarmUpResult(final int count, final int threads, final long elapsedNanos, final long totalNanos,
+                 final String slowestName, final long slowestNanos) {
+        this.count = count;
+        this.threads = threads;
+        this.elapsedNanos = elapsedNanos;
+        this.totalNanos = totalNanos;
+        this.slowestName = slowestName;
+        this.slowestNanos = slowestNanos;
+    }
+
+    /**
+     * The number of logs which were warmed up.
+     *
+     * @return the number of logs
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The number of threads the logs were warmed up on.
+     *
+     * @return the number of threads, 0 if no logs were warmed up
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * The wall clock time the warm-up took.
+     *
+     * @param unit the unit to return the time in
+     *
+     * @return the elapsed time
+     */
+    public long getElapsedTime(final TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The sum of the time taken to warm up each log, across all threads.
+     *
+     * @param unit the unit to return the time in
+     *
+     * @return the total time
+     */
+    public long getTotalTime(final TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The name of the log which took the longest to warm up.
+     *
+     * @return the name of the slowest log or {@code null} if no logs were warmed up
+     */
+    public String getSlowestName() {
+        return slowestName;
+    }
+
+    /**
+     * The time taken to warm up the {@linkplain #getSlowestName() slowest log}.
+     *
+     * @param unit the unit to return the time in
+     *
+     * @return the time taken by the slowest log
+     */
+    public long getSlowestTime(final TimeUnit unit) {
+        return unit.convert(slowestNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "No logs were warmed up";
+        }
+        return String.format("Warmed up %d logs on %d threads in %d ms, the slowest was %s which took %d us",
+                count, threads, getElapsedTime(TimeUnit.MILLISECONDS), slowestName, getSlowestTime(TimeUnit.MICROSECONDS));
+    }
+}
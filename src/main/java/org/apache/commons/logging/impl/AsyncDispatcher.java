@@ -0,0 +1,428 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log events off to a single consumer thread through a bounded ring buffer.
+ * <p>
+ * The events are preallocated and reused. Any number of threads may {@linkplain #dispatch(Object, int, Object,
+ * Throwable, long) dispatch} events without locking. A slot is claimed by incrementing the tail and published by
+ * advancing the sequence of the slot, which the consumer waits on.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+abstract class AsyncDispatcher implements AsyncStatisticsMXBean {
+
+    /**
+     * How the consumer waits for events and how producers wait for space when the {@linkplain OverflowPolicy#BLOCK
+     * overflow policy blocks}.
+     */
+    enum WaitStrategy {
+        /**
+         * Spins without giving up the CPU. Lowest latency, but the consumer occupies a core.
+         */
+        SPIN,
+        /**
+         * Yields the CPU between checks.
+         */
+        YIELD,
+        /**
+         * Parks the thread until it is signalled or a short timeout elapses.
+         */
+        PARK
+    }
+
+    /**
+     * What happens when an event is dispatched and the ring buffer is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * Waits for space in the ring buffer.
+         */
+        BLOCK,
+        /**
+         * The event is discarded.
+         */
+        DISCARD,
+        /**
+         * The oldest queued event is discarded to make space for the event.
+         */
+        DISCARD_OLDEST,
+        /**
+         * The event is handled on the calling thread.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * A log event. The fields are only valid between the event being claimed and it being delivered.
+     */
+    static final class Event {
+        Object target;
+        // The level as understood by the target, the LogLevels bit for JBossLog and the LOG_LEVEL constant for SimpleLog
+        int level;
+        Object message;
+        Throwable thrown;
+        // The time in milliseconds the event was logged at, 0 if the target does not use it
+        long timestamp;
+        // The name of the thread which logged the event, null if the target does not use it
+        String thread;
+    }
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    /**
+     * The default time {@linkplain #close() closing} waits for the queued events to be delivered.
+     */
+    static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10L);
+
+    private final Event[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread consumer;
+    private final Thread shutdownHook;
+    private final long closeTimeoutMillis;
+    // Advanced by the consumer, or by a producer discarding the oldest event, to claim the event at the head
+    private final AtomicLong head = new AtomicLong();
+    // The event being delivered, only accessed by the consumer or, once terminated, while holding the lock
+    private final Event delivery = new Event();
+    private volatile boolean consumerWaiting;
+    private volatile boolean closed;
+    private volatile boolean terminated;
+
+    /**
+     * Creates a new dispatcher and starts the consumer thread.
+     *
+     * @param name           the name of the consumer thread
+     * @param capacity       the minimum capacity of the ring buffer, rounded up to a power of two
+     * @param waitStrategy   the wait strategy
+     * @param overflowPolicy the policy used when the ring buffer is full
+     */
+    AsyncDispatcher(final String name, final int capacity, final WaitStrategy waitStrategy, final OverflowPolicy overflowPolicy) {
+        this(name, capacity, waitStrategy, overflowPolicy, CLOSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a new dispatcher and starts the consumer thread.
+     *
+     * @param name               the name of the consumer thread
+     * @param capacity           the minimum capacity of the ring buffer, rounded up to a power of two
+     * @param waitStrategy       the wait strategy
+     * @param overflowPolicy     the policy used when the ring buffer is full
+     * @param closeTimeoutMillis how long closing, including from the shutdown hook, waits for the queued events to be
+     *                           delivered
+     */
+    AsyncDispatcher(final String name, final int capacity, final WaitStrategy waitStrategy, final OverflowPolicy overflowPolicy,
+                    final long closeTimeoutMillis) {
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        events = new Event[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new Event();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        consumer = createThread(name, new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        });
+        shutdownHook = createThread(name + "-shutdown", new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+        consumer.start();
+        try {
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } catch (SecurityException ignore) {
+        } catch (IllegalStateException ignore) {
+            // Shutdown is in progress
+        }
+    }
+
+    /**
+     * Delivers the event to its target. Invoked on the consumer thread, or on the calling thread if the event cannot
+     * be queued. The event is only valid for the duration of the call.
+     *
+     * @param event the event to deliver
+     */
+    abstract void deliver(Event event);
+
+    /**
+     * Queues an event.
+     *
+     * @param target    the target the event is delivered to
+     * @param level     the level, in the form the {@linkplain #deliver(Event) delivery} of the target expects
+     * @param message   the message
+     * @param thrown    the cause, may be {@code null}
+     * @param timestamp the time in milliseconds the event was logged at, or 0 if the target does not use it
+     * @param thread    the name of the thread which logged the event, or {@code null} if the target does not use it
+     *
+     * @return {@code true} if the event was queued or discarded, {@code false} if the caller is responsible for
+     * handling the event
+     */
+    boolean dispatch(final Object target, final int level, final Object message, final Throwable thrown, final long timestamp,
+                     final String thread) {
+        long position;
+        while (true) {
+            if (closed) {
+                return false;
+            }
+            position = tail.get();
+            final long available = sequences.get((int) position & mask) - position;
+            if (available == 0L) {
+                if (tail.compareAndSet(position, position + 1L)) {
+                    break;
+                }
+            } else if (available < 0L) {
+                // The ring buffer is full
+                if (overflowPolicy == OverflowPolicy.DISCARD) {
+                    discarded.incrementAndGet();
+                    return true;
+                } else if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+                    return false;
+                } else if (overflowPolicy == OverflowPolicy.DISCARD_OLDEST) {
+                    if (!discardOldest(position)) {
+                        // The consumer is copying the oldest event out of the slot, which it releases straight away
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                await();
+            }
+            // Otherwise another producer claimed the slot, try again
+        }
+        final int index = (int) position & mask;
+        final Event event = events[index];
+        event.target = target;
+        event.level = level;
+        event.message = message;
+        event.thrown = thrown;
+        event.timestamp = timestamp;
+        event.thread = thread;
+        sequences.set(index, position + 1L);
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+        if (terminated) {
+            // The consumer exited before the event was published, deliver it here
+            synchronized (this) {
+                drain();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of events discarded because the ring buffer was full.
+     *
+     * @return the number of discarded events
+     */
+    @Override
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Stops accepting events, waits for the queued events to be delivered and stops the consumer thread.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(consumer);
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (SecurityException ignore) {
+            } catch (IllegalStateException ignore) {
+                // Shutdown is in progress
+            }
+        }
+        if (Thread.currentThread() != consumer) {
+            try {
+                consumer.join(closeTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void consume() {
+        while (true) {
+            if (!drain()) {
+                if (closed) {
+                    synchronized (this) {
+                        // Set before the last drain: a producer publishing after it sees terminated and delivers the
+                        // event itself, one publishing before it has its event delivered here
+                        terminated = true;
+                        drain();
+                    }
+                    return;
+                }
+                consumerWaiting = true;
+                try {
+                    // Check again now that producers will signal
+                    if (!isAvailable()) {
+                        await();
+                    }
+                } finally {
+                    consumerWaiting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers the available events.
+     *
+     * @return {@code true} if at least one event was delivered
+     */
+    private boolean drain() {
+        boolean delivered = false;
+        while (true) {
+            final long position = head.get();
+            final int index = (int) position & mask;
+            if (sequences.get(index) != position + 1L) {
+                return delivered;
+            }
+            if (!head.compareAndSet(position, position + 1L)) {
+                // Discarded by a producer
+                continue;
+            }
+            // Copy the event out so the slot is released before delivering. A full ring buffer then only holds events
+            // which have not been claimed, so discarding the oldest always releases the slot a producer waits on.
+            final Event event = events[index];
+            delivery.target = event.target;
+            delivery.level = event.level;
+            delivery.message = event.message;
+            delivery.thrown = event.thrown;
+            delivery.timestamp = event.timestamp;
+            delivery.thread = event.thread;
+            release(event, index, position);
+            try {
+                deliver(delivery);
+            } catch (Throwable ignore) {
+                // A failing handler must not stop the consumer
+            } finally {
+                delivery.target = null;
+                delivery.message = null;
+                delivery.thrown = null;
+                delivery.thread = null;
+            }
+            delivered = true;
+        }
+    }
+
+    /**
+     * Discards the oldest event, which is in the slot the producer is trying to claim.
+     *
+     * @param position the position the producer is trying to claim
+     *
+     * @return {@code true} if an event was discarded, {@code false} if the consumer has claimed the event
+     */
+    private boolean discardOldest(final long position) {
+        final long oldest = head.get();
+        if (position - oldest <= mask) {
+            return false;
+        }
+        final int index = (int) oldest & mask;
+        if (sequences.get(index) != oldest + 1L || !head.compareAndSet(oldest, oldest + 1L)) {
+            return false;
+        }
+        release(events[index], index, oldest);
+        discarded.incrementAndGet();
+        return true;
+    }
+
+    private void release(final Event event, final int index, final long position) {
+        event.target = null;
+        event.message = null;
+        event.thrown = null;
+        event.thread = null;
+        sequences.set(index, position + mask + 1L);
+    }
+
+    private boolean isAvailable() {
+        final long position = head.get();
+        return sequences.get((int) position & mask) == position + 1L;
+    }
+
+    private void await() {
+        switch (waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                LockSupport.parkNanos(this, PARK_NANOS);
+        }
+    }
+
+    /**
+     * Creates a daemon thread which does not hold on to the context class loader of the caller.
+     *
+     * @param name the name of the thread
+     * @param task the task the thread runs
+     *
+     * @return the thread, not started
+     */
+    static Thread createThread(final String name, final Runnable task) {
+        return AccessController.doPrivileged(new PrivilegedAction<Thread>() {
+            @Override
+            public Thread run() {
+                final Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                // Do not hold on to the class loader of whichever deployment happened to create the thread
+                thread.setContextClassLoader(null);
+                return thread;
+            }
+        });
+    }
+}
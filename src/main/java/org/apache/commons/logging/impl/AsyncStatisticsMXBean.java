@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * The statistics of the queue used when {@link SimpleLog} logs asynchronously.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public interface AsyncStatisticsMXBean {
+
+    /**
+     * The name the statistics of the {@link SimpleLog} queue are registered with on the platform MBean server.
+     */
+    String SIMPLE_LOG_OBJECT_NAME = "org.apache.commons.logging:type=SimpleLog,name=async";
+
+    /**
+     * Returns the number of messages waiting to be written.
+     *
+     * @return the number of queued messages
+     */
+    int getQueueDepth();
+
+    /**
+     * Returns the number of messages which can be queued.
+     *
+     * @return the capacity of the queue
+     */
+    int getQueueCapacity();
+
+    /**
+     * Returns the number of messages discarded because the queue was full.
+     *
+     * @return the number of discarded messages
+     */
+    long getDiscardedCount();
+}
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * Associates a {@link JBossLog} with a type. The association is removed when the type is unloaded, and replaced once
+ * the logs of the class loader the log came from are removed from the cache.
+ * <p>
+ * Note that {@link ClassValue} was introduced in Java 7. This type must only be loaded once it has been determined
+ * {@link ClassValue} is available.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class ClassLogs extends ClassValue<ClassLogs.Entry> {
+    private final JBossLogCache cache;
+
+    ClassLogs(final JBossLogCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    protected Entry computeValue(final Class<?> type) {
+        // Remember the logs the log came from so a removal racing with the lookup results in the entry being replaced
+        final JBossLogCache.Logs logs = cache.getLogs(JBossLogFactory.classLoaderOf(type));
+        return new Entry(cache.getLog(logs, type.getName()), logs);
+    }
+
+    /**
+     * Returns the log associated with the type.
+     *
+     * @param type the type to get the log for
+     *
+     * @return the log
+     */
+    JBossLog getLog(final Class<?> type) {
+        Entry entry = get(type);
+        if (entry.logs.removed) {
+            // The log has been evicted from the cache, look it up again
+            remove(type);
+            entry = get(type);
+        }
+        return entry.log;
+    }
+
+    static final class Entry {
+        final JBossLog log;
+        final JBossLogCache.Logs logs;
+
+        private Entry(final JBossLog log, final JBossLogCache.Logs logs) {
+            this.log = log;
+            this.logs = logs;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * A clock which is read without a system call. A daemon thread updates the time at a fixed resolution, so a reading
+ * may lag the system clock by up to the resolution.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class CoarseClock {
+    private final long resolutionMillis;
+    private volatile long millis = System.currentTimeMillis();
+
+    private CoarseClock(final long resolutionMillis) {
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    /**
+     * Creates a clock and starts the thread which ticks it.
+     *
+     * @param name             the name of the ticker thread
+     * @param resolutionMillis how often the time is updated in milliseconds
+     *
+     * @return the clock
+     */
+    static CoarseClock start(final String name, final long resolutionMillis) {
+        final CoarseClock clock = new CoarseClock(resolutionMillis);
+        AsyncDispatcher.createThread(name, new Runnable() {
+            @Override
+            public void run() {
+                clock.tick();
+            }
+        }).start();
+        return clock;
+    }
+
+    /**
+     * Returns the time of the last tick.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    long millis() {
+        return millis;
+    }
+
+    private void tick() {
+        while (true) {
+            try {
+                Thread.sleep(resolutionMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            millis = System.currentTimeMillis();
+        }
+    }
+}
@@ -21,11 +21,13 @@ package org.apache.commons.logging.impl;
 
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jboss.logging.Logger;
 import org.jboss.logging.Logger.Level;
+import org.jboss.logging.MDC;
 
 /**
  * Log implementation that logs to JBoss Logging.
@@ -35,112 +37,412 @@ import org.jboss.logging.Logger.Level;
 class JBossLog implements Log, Serializable {
     private static final long serialVersionUID = 7757100415375072992L;
     private static final String LOGGER_CLASS_NAME = JBossLog.class.getName();
+    // Not a valid class name so no frame of the consumer thread is mistaken for the caller of an asynchronous event
+    private static final String ASYNC_LOGGER_CLASS_NAME = "<async>";
+
+    /**
+     * The largest level generation which can be stored with the cached levels.
+     */
+    static final int MAX_GENERATION = -1 >>> 6;
+    private static final int GENERATION_SHIFT = 6;
+
     private final String name;
-    private final transient Logger delegate;
+    // Resolved on first use as most logs are never used. Racily published, which is safe as the loggers are
+    // immutable and every thread resolves the same logger for the name.
+    private transient Logger delegate;
+    private final transient JBossLogFactory factory;
+    // The cached levels are the bit mask of the enabled levels in the low bits and the level generation the levels
+    // were resolved in in the high bits
+    private transient volatile int levels;
+    // The policies which apply to this log, resolved racily as the policy is immutable
+    private transient LogPolicy policy;
+    // Note that each field is paid for by every log, of which there may be hundreds of thousands. Anything only used
+    // when a feature is enabled, like the latency recorders, is looked up from the factory instead.
 
-    JBossLog(final String name) {
-        delegate = Logger.getLogger(name);
+    JBossLog(final JBossLogFactory factory, final String name) {
+        this.factory = factory;
         this.name = name;
+        factory.loggerCreated();
     }
 
     @Override
     public void debug(final Object message) {
-        log(Level.DEBUG, message);
+        log(LogLevels.DEBUG, Level.DEBUG, message, null);
     }
 
     @Override
     public void debug(final Object message, final Throwable t) {
-        log(Level.DEBUG, message, t);
+        log(LogLevels.DEBUG, Level.DEBUG, message, t);
     }
 
     @Override
     public void error(final Object message) {
-        log(Level.ERROR, message);
+        log(LogLevels.ERROR, Level.ERROR, message, null);
     }
 
     @Override
     public void error(final Object message, final Throwable t) {
-        log(Level.ERROR, message, t);
+        log(LogLevels.ERROR, Level.ERROR, message, t);
     }
 
     @Override
     public void fatal(final Object message) {
-        log(Level.FATAL, message);
+        log(LogLevels.FATAL, Level.FATAL, message, null);
     }
 
     @Override
     public void fatal(final Object message, final Throwable t) {
-        log(Level.FATAL, message, t);
+        log(LogLevels.FATAL, Level.FATAL, message, t);
     }
 
     @Override
     public void info(final Object message) {
-        log(Level.INFO, message);
+        log(LogLevels.INFO, Level.INFO, message, null);
     }
 
     @Override
     public void info(final Object message, final Throwable t) {
-        log(Level.INFO, message, t);
+        log(LogLevels.INFO, Level.INFO, message, t);
     }
 
     @Override
     public boolean isDebugEnabled() {
-        return delegate.isEnabled(Level.DEBUG);
+        return isGuardEnabled(LogLevels.DEBUG, Level.DEBUG);
     }
 
     @Override
     public boolean isErrorEnabled() {
-        return delegate.isEnabled(Level.ERROR);
+        return isGuardEnabled(LogLevels.ERROR, Level.ERROR);
     }
 
     @Override
     public boolean isFatalEnabled() {
-        return delegate.isEnabled(Level.FATAL);
+        return isGuardEnabled(LogLevels.FATAL, Level.FATAL);
     }
 
     @Override
     public boolean isInfoEnabled() {
-        return delegate.isEnabled(Level.INFO);
+        return isGuardEnabled(LogLevels.INFO, Level.INFO);
     }
 
     @Override
     public boolean isTraceEnabled() {
-        return delegate.isEnabled(Level.TRACE);
+        return isGuardEnabled(LogLevels.TRACE, Level.TRACE);
     }
 
     @Override
     public boolean isWarnEnabled() {
-        return delegate.isEnabled(Level.WARN);
+        return isGuardEnabled(LogLevels.WARN, Level.WARN);
     }
 
     @Override
     public void trace(final Object message) {
-        log(Level.TRACE, message);
+        log(LogLevels.TRACE, Level.TRACE, message, null);
     }
 
     @Override
     public void trace(final Object message, final Throwable t) {
-        log(Level.TRACE, message, t);
+        log(LogLevels.TRACE, Level.TRACE, message, t);
     }
 
     @Override
     public void warn(final Object message) {
-        log(Level.WARN, message);
+        log(LogLevels.WARN, Level.WARN, message, null);
     }
 
     @Override
     public void warn(final Object message, final Throwable t) {
-        log(Level.WARN, message, t);
+        log(LogLevels.WARN, Level.WARN, message, t);
+    }
+
+    /**
+     * Returns the bit mask of the enabled levels. If the level cache is enabled on the factory the levels are only
+     * resolved from the delegate when the level generation has changed. Levels below the JVM wide minimum level are
+     * never enabled.
+     *
+     * @return the enabled levels
+     *
+     * @see LogLevels
+     */
+    int enabledLevels() {
+        final int generation = factory.levelGeneration();
+        if (generation == 0) {
+            return resolveLevels() & LevelFloor.allowedLevels();
+        }
+        return cachedLevels(generation) & LevelFloor.allowedLevels();
+    }
+
+    /**
+     * Checks if a level is enabled for a guard check. If the level is sampled the check is sampled.
+     */
+    private boolean isGuardEnabled(final int bit, final Level level) {
+        if (!isEnabled(bit, level)) {
+            return false;
+        }
+        final LogPolicies policies = factory.policies();
+        return policies == null || isSampled(policies, bit, true);
+    }
+
+    private boolean isEnabled(final int bit, final Level level) {
+        if (!LevelFloor.isAllowed(bit)) {
+            return false;
+        }
+        final int generation = factory.levelGeneration();
+        if (generation == 0) {
+            return delegate().isEnabled(level);
+        }
+        return (cachedLevels(generation) & bit) != 0;
+    }
+
+    private int cachedLevels(final int generation) {
+        int state = levels;
+        if ((state >>> GENERATION_SHIFT) != generation) {
+            // A benign race, any thread resolving the levels for the same generation gets the same result
+            state = (generation << GENERATION_SHIFT) | resolveLevels();
+            levels = state;
+        }
+        return state & LogLevels.ALL;
+    }
+
+    private int resolveLevels() {
+        final Logger delegate = delegate();
+        int result = 0;
+        if (delegate.isEnabled(Level.TRACE)) {
+            result |= LogLevels.TRACE;
+        }
+        if (delegate.isEnabled(Level.DEBUG)) {
+            result |= LogLevels.DEBUG;
+        }
+        if (delegate.isEnabled(Level.INFO)) {
+            result |= LogLevels.INFO;
+        }
+        if (delegate.isEnabled(Level.WARN)) {
+            result |= LogLevels.WARN;
+        }
+        if (delegate.isEnabled(Level.ERROR)) {
+            result |= LogLevels.ERROR;
+        }
+        if (delegate.isEnabled(Level.FATAL)) {
+            result |= LogLevels.FATAL;
+        }
+        return result;
+    }
+
+    private void log(final int levelBit, final Level level, final Object message, final Throwable t) {
+        if (!LevelFloor.isAllowed(levelBit)) {
+            return;
+        }
+        final LogStatistics statistics = factory.statistics();
+        final LogPolicies policies = factory.policies();
+        final MessageCoalescer coalescer = factory.coalescer();
+        if (statistics == null && policies == null && coalescer == null) {
+            write(levelBit, level, message, t);
+            return;
+        }
+        final boolean enabled = isEnabled(levelBit, level);
+        if (statistics != null) {
+            statistics.called(levelBit, enabled, t != null);
+        }
+        if (!enabled) {
+            return;
+        }
+        // Sampling is the cheapest check, repeats are coalesced next so they do not use up the rate limit
+        if (policies != null && !isSampled(policies, levelBit, false)) {
+            return;
+        }
+        if (coalescer != null && !coalescer.accept(this, name, levelBit, message, t, System.nanoTime())) {
+            return;
+        }
+        if (policies == null || isAllowed(policies, levelBit)) {
+            write(levelBit, level, message, t);
+        }
+    }
+
+    /**
+     * Logs the number of times a coalesced message was repeated.
+     *
+     * @param levelBit the {@link LogLevels} bit of the level the message was logged at
+     * @param message  the message
+     * @param count    the number of repeats
+     */
+    void repeated(final int levelBit, final String message, final long count) {
+        write(levelBit, toLevel(levelBit), String.format("Message repeated %d times: %s", count, message), null);
+    }
+
+    private LogPolicy policy(final LogPolicies policies) {
+        LogPolicy policy = this.policy;
+        if (policy == null || !policy.isResolvedFrom(policies)) {
+            this.policy = policy = policies.resolve(name);
+        }
+        return policy;
+    }
+
+    /**
+     * Samples a message for an enabled level.
+     *
+     * @param guard {@code true} if this is a guard check, in which case a sampled message is remembered so the guarded
+     *              message is not sampled again
+     *
+     * @return {@code true} if the message should be logged
+     */
+    private boolean isSampled(final LogPolicies policies, final int levelBit, final boolean guard) {
+        final long threshold = policy(policies).sampleThreshold(levelBit);
+        if (threshold == LogPolicy.NOT_SAMPLED) {
+            return true;
+        }
+        final Sampler sampler = Sampler.current();
+        // Every sampling decision clears what an earlier guard check granted, used or not
+        if (sampler.consume(this, levelBit) && !guard) {
+            return true;
+        }
+        final boolean sampled = sampler.next() < threshold;
+        factory.sampled(sampled);
+        if (sampled && guard) {
+            sampler.grant(this, levelBit);
+        }
+        return sampled;
+    }
+
+    /**
+     * Applies the rate limits to a message for an enabled level.
+     *
+     * @return {@code true} if the message should be logged
+     */
+    private boolean isAllowed(final LogPolicies policies, final int levelBit) {
+        final RateLimiter rateLimiter = policy(policies).rateLimiter(levelBit);
+        if (rateLimiter != null) {
+            final long suppressed = rateLimiter.roll(System.nanoTime());
+            if (suppressed > 0L) {
+                suppressed(rateLimiter, levelBit, suppressed);
+            }
+            if (!rateLimiter.tryAcquire(this)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Logs the number of messages suppressed by a rate limit in a period which ended.
+     *
+     * @param rateLimiter the rate limiter which suppressed the messages
+     * @param levelBit    the {@link LogLevels} bit of the level the rate limit applies to
+     * @param count       the number of suppressed messages
+     */
+    void suppressed(final RateLimiter rateLimiter, final int levelBit, final long count) {
+        write(levelBit, toLevel(levelBit), String.format("%d messages were suppressed by the rate limit of %d messages every %d seconds.",
+                count, rateLimiter.getPermits(), TimeUnit.NANOSECONDS.toSeconds(rateLimiter.getPeriodNanos())), null);
+    }
+
+    private void write(final int levelBit, final Level level, final Object message, final Throwable t) {
+        if (LatencyRecorder.ENABLED) {
+            final long start = System.nanoTime();
+            dispatch(levelBit, level, message, t);
+            latencyRecorder(levelBit).record(System.nanoTime() - start);
+        } else {
+            dispatch(levelBit, level, message, t);
+        }
+    }
+
+    private LatencyRecorder latencyRecorder(final int levelBit) {
+        final int index = LogPolicies.levelIndex(levelBit);
+        final LatencyRecorders.Levels latencies = factory.latencyRecorders(name);
+        LatencyRecorder recorder = latencies.get(index);
+        if (recorder == null) {
+            latencies.compareAndSet(index, null, new LatencyRecorder());
+            recorder = latencies.get(index);
+        }
+        return recorder;
+    }
+
+    private void dispatch(final int levelBit, final Level level, final Object message, final Throwable t) {
+        final Logger delegate = delegate();
+        final AsyncDispatcher dispatcher = factory.asyncDispatcher();
+        if (dispatcher == null) {
+            delegate.log(level, LOGGER_CLASS_NAME, message, t);
+        } else if (delegate.isEnabled(level)) {
+            // Snapshot the message as it may be mutated once this method returns
+            final String text = message == null ? null : message.toString();
+            if (!dispatcher.dispatch(delegate, levelBit, text, t, System.currentTimeMillis(), Thread.currentThread().getName())) {
+                delegate.log(level, LOGGER_CLASS_NAME, text, t);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the log.
+     *
+     * @return the log name
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * Returns the delegate logger, resolving it on first use.
+     *
+     * @return the delegate logger
+     */
+    Logger delegate() {
+        Logger delegate = this.delegate;
+        if (delegate == null) {
+            this.delegate = delegate = factory.getDelegate(name);
+        }
+        return delegate;
+    }
+
+    /**
+     * Delivers an event queued by an {@link AsyncDispatcher} to the delegate logger.
+     * <p>
+     * The Logger API cannot pass on the thread and time the event was logged at, so they are put in the MDC of the
+     * consumer thread while the event is delivered.
+     * </p>
+     *
+     * @param event the event to deliver
+     *
+     * @see JBossLogFactory#ASYNC_THREAD_KEY
+     * @see JBossLogFactory#ASYNC_TIMESTAMP_KEY
+     */
+    static void deliver(final AsyncDispatcher.Event event) {
+        MDC.put(JBossLogFactory.ASYNC_THREAD_KEY, event.thread);
+        MDC.put(JBossLogFactory.ASYNC_TIMESTAMP_KEY, event.timestamp);
+        try {
+            ((Logger) event.target).log(toLevel(event.level), ASYNC_LOGGER_CLASS_NAME, event.message, event.thrown);
+        } finally {
+            MDC.remove(JBossLogFactory.ASYNC_THREAD_KEY);
+            MDC.remove(JBossLogFactory.ASYNC_TIMESTAMP_KEY);
+        }
     }
 
-    private void log(final Level level, final Object message) {
-        log(level, message, null);
+    /**
+     * Returns the level for the {@link LogLevels} bit.
+     *
+     * @param levelBit the level bit
+     *
+     * @return the level
+     */
+    static Level toLevel(final int levelBit) {
+        switch (levelBit) {
+            case LogLevels.TRACE:
+                return Level.TRACE;
+            case LogLevels.DEBUG:
+                return Level.DEBUG;
+            case LogLevels.INFO:
+                return Level.INFO;
+            case LogLevels.WARN:
+                return Level.WARN;
+            case LogLevels.ERROR:
+                return Level.ERROR;
+            default:
+                return Level.FATAL;
+        }
     }
 
-    private void log(final Level level, final Object message, final Throwable t) {
-        delegate.log(level, LOGGER_CLASS_NAME, message, t);
+    private Object writeReplace() throws ObjectStreamException {
+        return LogProxy.jbossLog(name);
     }
 
+    // Logs serialized before the LogProxy was introduced
     private Object readResolve() throws ObjectStreamException {
         return LogFactory.getLog(name);
     }
@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of {@link JBossLog} instances keyed by the logger name and the class loader which owns the log context the
+ * log was created in.
+ * <p>
+ * Lookups never lock. The class loaders are held weakly so a redeployed application does not leak through the cache.
+ * The set of class loaders is expected to be small, one per deployment, so the entries are kept in a copy-on-write
+ * array which is scanned on lookup.
+ * </p>
+ * <p>
+ * The logs of each class loader are kept in their own map, which is flagged once it is removed. A type associated with
+ * a log remembers the map the log came from, so removing the logs of one class loader only invalidates the
+ * associations of the logs in that map.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class JBossLogCache {
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final boolean CLASS_VALUE_SUPPORTED = isClassValueSupported();
+
+    private final JBossLogFactory factory;
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>();
+    // Logs created when there is no context class loader, replaced when removed
+    private volatile Logs bootstrapLogs = new Logs();
+    // Will be null if java.lang.ClassValue is not available
+    private final ClassLogs classLogs;
+    private volatile Entry[] entries = NO_ENTRIES;
+
+    JBossLogCache(final JBossLogFactory factory) {
+        this.factory = factory;
+        classLogs = CLASS_VALUE_SUPPORTED ? new ClassLogs(this) : null;
+    }
+
+    /**
+     * Returns the cached log for the class loader and name, creating it if required.
+     *
+     * @param classLoader the class loader that owns the log context, may be {@code null}
+     * @param name        the name of the log
+     *
+     * @return the log
+     */
+    JBossLog getLog(final ClassLoader classLoader, final String name) {
+        return getLog(getLogs(classLoader), name);
+    }
+
+    /**
+     * Returns the log from the logs of a class loader, creating it if required.
+     *
+     * @param logs the logs of the class loader that owns the log context
+     * @param name the name of the log
+     *
+     * @return the log
+     */
+    JBossLog getLog(final Logs logs, final String name) {
+        JBossLog log = logs.get(name);
+        if (log == null) {
+            // Both the key and the log share the canonical name so the name passed in is not retained
+            final String canonical = factory.canonicalName(name);
+            log = new JBossLog(factory, canonical);
+            final JBossLog appearing = logs.putIfAbsent(canonical, log);
+            if (appearing != null) {
+                log = appearing;
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Returns the cached log for the type, creating it if required. The type must have been loaded by the class loader
+     * which owns the log context.
+     * <p>
+     * Where {@code java.lang.ClassValue} is available the log is associated with the type itself, which avoids hashing
+     * the name on each lookup and allows the association to be collected with the type.
+     * </p>
+     *
+     * @param type the type to get the log for
+     *
+     * @return the log
+     */
+    JBossLog getLog(final Class<?> type) {
+        if (classLogs == null) {
+            return getLog(JBossLogFactory.classLoaderOf(type), type.getName());
+        }
+        return classLogs.getLog(type);
+    }
+
+    /**
+     * Removes all the logs associated with the class loader.
+     *
+     * @param classLoader the class loader to remove the logs for, may be {@code null}
+     */
+    void remove(final ClassLoader classLoader) {
+        synchronized (this) {
+            if (classLoader == null) {
+                final Logs removed = bootstrapLogs;
+                bootstrapLogs = new Logs();
+                removed.removed = true;
+                return;
+            }
+            final Entry[] current = expunge(entries);
+            final int index = indexOf(current, classLoader);
+            if (index < 0) {
+                entries = current;
+            } else {
+                current[index].logs.removed = true;
+                final Entry[] replacement = new Entry[current.length - 1];
+                System.arraycopy(current, 0, replacement, 0, index);
+                System.arraycopy(current, index + 1, replacement, index, replacement.length - index);
+                entries = replacement;
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached logs.
+     */
+    void clear() {
+        synchronized (this) {
+            final Logs removed = bootstrapLogs;
+            bootstrapLogs = new Logs();
+            removed.removed = true;
+            for (Entry entry : entries) {
+                entry.logs.removed = true;
+            }
+            // Drain the queue as the entries no longer need to be expunged
+            while (queue.poll() != null) {
+                // Nothing to do
+            }
+            entries = NO_ENTRIES;
+        }
+    }
+
+    /**
+     * Returns the logs of the class loader, creating them if required.
+     *
+     * @param classLoader the class loader that owns the log context, may be {@code null}
+     *
+     * @return the logs of the class loader
+     */
+    Logs getLogs(final ClassLoader classLoader) {
+        if (classLoader == null) {
+            return bootstrapLogs;
+        }
+        Entry[] current = entries;
+        int index = indexOf(current, classLoader);
+        if (index >= 0) {
+            return current[index].logs;
+        }
+        synchronized (this) {
+            current = expunge(entries);
+            index = indexOf(current, classLoader);
+            if (index >= 0) {
+                entries = current;
+                return current[index].logs;
+            }
+            final Entry entry = new Entry(classLoader, queue);
+            final Entry[] replacement = new Entry[current.length + 1];
+            System.arraycopy(current, 0, replacement, 0, current.length);
+            replacement[current.length] = entry;
+            entries = replacement;
+            return entry.logs;
+        }
+    }
+
+    /**
+     * Removes any entries whose class loader has been collected. Must be called while holding the lock.
+     */
+    private Entry[] expunge(final Entry[] current) {
+        if (queue.poll() == null) {
+            return current;
+        }
+        while (queue.poll() != null) {
+            // Drain the queue, the array is scanned below
+        }
+        int live = 0;
+        for (Entry entry : current) {
+            if (entry.get() != null) {
+                live++;
+            }
+        }
+        final Entry[] replacement = new Entry[live];
+        int i = 0;
+        for (Entry entry : current) {
+            if (entry.get() != null) {
+                replacement[i++] = entry;
+            }
+        }
+        return replacement;
+    }
+
+    private static boolean isClassValueSupported() {
+        try {
+            Class.forName("java.lang.ClassValue", false, null);
+            return true;
+        } catch (Throwable ignore) {
+            return false;
+        }
+    }
+
+    private static int indexOf(final Entry[] entries, final ClassLoader classLoader) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].get() == classLoader) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The logs of a class loader keyed by name.
+     */
+    static final class Logs extends ConcurrentHashMap<String, JBossLog> {
+        private static final long serialVersionUID = 1L;
+
+        // Set once the logs are removed from the cache, logs associated with a type are then looked up again
+        volatile boolean removed;
+    }
+
+    private static final class Entry extends WeakReference<ClassLoader> {
+        final Logs logs = new Logs();
+
+        Entry(final ClassLoader classLoader, final ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+        }
+    }
+}
@@ -19,17 +19,30 @@
 
 package org.apache.commons.logging.impl;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogConfigurationException;
 import org.apache.commons.logging.LogFactory;
 import org.jboss.logging.Logger;
+import org.jboss.logging.LoggerProvider;
 
 /**
  * An implementation of Apache Commons Logging {@code LogFactory} for JBoss Logging.
@@ -37,6 +50,182 @@ import org.jboss.logging.Logger;
  * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
  */
 public class JBossLogFactory extends LogFactory {
+
+    /**
+     * The name of the attribute, or system property, used to enable caching of the {@link Log} instances returned from
+     * this factory. Set the value to {@code true} to enable the cache. An attribute set on the factory takes precedence
+     * over the system property.
+     * <p>
+     * When enabled the same {@link Log} is returned for the same name and
+     * {@linkplain Thread#getContextClassLoader() context class loader}. Use {@link LogFactory#release(ClassLoader)} to
+     * evict the logs associated with a class loader.
+     * </p>
+     */
+    public static final String CACHE_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.cache";
+
+    /**
+     * The name of the attribute, or system property, used to enable caching of the enabled levels of the {@link Log}
+     * instances returned from this factory. Set the value to {@code true} to enable the cache.
+     * <p>
+     * When enabled the {@code is*Enabled()} methods only consult the log manager after {@link #levelsChanged()} has
+     * been invoked. Whatever reconfigures the log manager must invoke {@link #levelsChanged()}, otherwise the levels
+     * will not reflect the new configuration.
+     * </p>
+     */
+    public static final String LEVEL_CACHE_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.levelCache";
+
+    /**
+     * The name of the system property used to set the JVM wide minimum level. Must be one of {@code trace},
+     * {@code debug}, {@code info}, {@code warn}, {@code error}, {@code fatal}, {@code off} or {@code all}. Messages
+     * below the minimum level are never logged regardless of the log manager configuration.
+     *
+     * @see #setMinimumLevel(String)
+     */
+    public static final String MINIMUM_LEVEL_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.minimumLevel";
+
+    /**
+     * The name of the attribute, or system property, used to enable asynchronous logging. Set the value to
+     * {@code true} to enable asynchronous logging.
+     * <p>
+     * When enabled, messages for enabled levels are converted to a string and queued on the calling thread together
+     * with the name of the calling thread and the current time. A single background thread hands the messages to the
+     * log manager. The records the log manager receives contain:
+     * </p>
+     * <ul>
+     * <li>the level, the logger name, the message as converted on the calling thread and the cause</li>
+     * <li>the name of the calling thread in the MDC under the {@link #ASYNC_THREAD_KEY} key</li>
+     * <li>the time in milliseconds the message was logged at in the MDC under the {@link #ASYNC_TIMESTAMP_KEY} key</li>
+     * </ul>
+     * <p>
+     * The thread and time of the record itself are those of the background thread when the message was handed over.
+     * No caller information is available, the log manager reports the caller as unknown. Use the MDC entries, for
+     * example {@code %X{org.apache.commons.logging.thread}} in a pattern, to see where and when the message was logged.
+     * </p>
+     *
+     * @see #ASYNC_QUEUE_LENGTH_PROPERTY
+     * @see #ASYNC_WAIT_STRATEGY_PROPERTY
+     * @see #ASYNC_OVERFLOW_POLICY_PROPERTY
+     */
+    public static final String ASYNC_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.async";
+
+    /**
+     * The MDC key of the name of the thread which logged a message when logging asynchronously.
+     *
+     * @see #ASYNC_PROPERTY
+     */
+    public static final String ASYNC_THREAD_KEY = "org.apache.commons.logging.thread";
+
+    /**
+     * The MDC key of the time in milliseconds a message was logged at when logging asynchronously.
+     *
+     * @see #ASYNC_PROPERTY
+     */
+    public static final String ASYNC_TIMESTAMP_KEY = "org.apache.commons.logging.timestamp";
+
+    /**
+     * The name of the attribute, or system property, for the number of messages which can be queued when logging
+     * asynchronously. The value is rounded up to a power of two. The default is {@code 1024}.
+     */
+    public static final String ASYNC_QUEUE_LENGTH_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.asyncQueueLength";
+
+    /**
+     * The name of the attribute, or system property, for how the background thread waits for messages when logging
+     * asynchronously. One of {@code spin}, {@code yield} or {@code park}. The default is {@code park}.
+     */
+    public static final String ASYNC_WAIT_STRATEGY_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.asyncWaitStrategy";
+
+    /**
+     * The name of the attribute, or system property, for what happens when the queue is full when logging
+     * asynchronously. One of {@code block}, which waits for space in the queue, {@code discard}, which drops the
+     * message, {@code discard-oldest}, which drops the oldest queued message, or {@code caller-runs}, which logs the
+     * message on the calling thread. The default is {@code block}.
+     */
+    public static final String ASYNC_OVERFLOW_POLICY_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.asyncOverflowPolicy";
+
+    /**
+     * The name of the attribute, or system property, used to limit the rate messages are logged. The value is a comma
+     * separated list of rules in the format {@code prefix[:level]=permits/seconds}. For example
+     * {@code com.example:warn=100/1,org.example=1000/10} allows 100 warning messages each second from loggers named
+     * {@code com.example} or starting with {@code com.example.}, and 1000 messages for each level every 10 seconds
+     * from the {@code org.example} loggers. A prefix of {@code *} matches all loggers.
+     * <p>
+     * The limits are shared by all the loggers which match the prefix and each level has its own limit. The most
+     * specific prefix wins. Once a period in which messages were suppressed ends a message with the number of
+     * suppressed messages is logged, either before the next message or, if no further message is logged, at the latest
+     * one period later.
+     * </p>
+     */
+    public static final String RATE_LIMIT_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.rateLimit";
+
+    /**
+     * The name of the attribute, or system property, used to sample trace and debug messages. The value is a comma
+     * separated list of rules in the format {@code prefix[:level]=messages/total}. For example
+     * {@code com.example:debug=1/1000} logs, on average, one in every 1000 debug messages from loggers named
+     * {@code com.example} or starting with {@code com.example.}. Without a level the rule applies to both trace and
+     * debug messages. A prefix of {@code *} matches all loggers and the most specific prefix wins.
+     * <p>
+     * The {@code isTraceEnabled()} and {@code isDebugEnabled()} checks are sampled as well, so a message which is only
+     * built when the check passes is not built when it would not be logged. When a check passes the next message
+     * logged at the level on the same thread is logged.
+     * </p>
+     *
+     * @see #getSampledCount()
+     * @see #getSampleDroppedCount()
+     */
+    public static final String SAMPLE_RATE_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.sampleRate";
+
+    /**
+     * The name of the attribute, or system property, for the window in milliseconds in which repeated messages are
+     * coalesced. Messages are repeats if they are logged to the same log at the same level with the same message and,
+     * if there is a cause, the same type of cause thrown from the same place. Only the first message in the window is
+     * logged. Once the window ends a message with the number of repeats is logged, at the latest one window later. By
+     * default messages are not coalesced.
+     */
+    public static final String COALESCE_WINDOW_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.coalesceWindow";
+
+    /**
+     * The name of the attribute, or system property, used to enable the collection of statistics. When enabled the
+     * statistics are registered on the platform MBean server with the name {@value LogStatisticsMXBean#OBJECT_NAME}.
+     * The default is {@code false}.
+     *
+     * @see #getStatistics()
+     */
+    public static final String STATISTICS_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.statistics";
+
+    /**
+     * The name of the system property used to record the latency of the calls to the delegate loggers. The latencies
+     * are recorded for each logger and level and can be read with {@link #sampleLatencies()} or the
+     * {@value LatencyStatisticsMXBean#OBJECT_NAME} MBean. The property is read once when the class is initialized,
+     * when disabled, the default, recording has no cost.
+     */
+    public static final String LATENCY_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.latency";
+
+    /**
+     * The name of the attribute, or system property, used to pin the logging backend the delegate loggers are created
+     * with. One of {@code jboss}, {@code jdk}, {@code slf4j}, {@code log4j2} or {@code log4j}, or the fully qualified
+     * class name of a {@link LoggerProvider} implementation with a no-argument constructor.
+     * <p>
+     * By default, or if the provider cannot be created, the delegates are created with {@link Logger#getLogger(String)}
+     * which uses the provider discovered by JBoss Logging. Logs which have already been used keep the delegate they
+     * were created with.
+     * </p>
+     */
+    public static final String PROVIDER_PROPERTY = "org.apache.commons.logging.impl.JBossLogFactory.provider";
+
+    private static final int DEFAULT_ASYNC_QUEUE_LENGTH = 1024;
+
+    private static final Map<String, String> PROVIDERS;
+
+    static {
+        final Map<String, String> providers = new HashMap<String, String>();
+        providers.put("jboss", "org.jboss.logging.JBossLogManagerProvider");
+        providers.put("jdk", "org.jboss.logging.JDKLoggerProvider");
+        providers.put("slf4j", "org.jboss.logging.Slf4jLoggerProvider");
+        providers.put("log4j2", "org.jboss.logging.Log4j2LoggerProvider");
+        providers.put("log4j", "org.jboss.logging.Log4jLoggerProvider");
+        PROVIDERS = Collections.unmodifiableMap(providers);
+    }
+
     private static final Collection<String> UNSUPPORTED_PROPERTIES = Arrays.asList(
             LogFactory.FACTORY_PROPERTY,
             "org.apache.commons.logging.Log",
@@ -46,68 +235,644 @@ public class JBossLogFactory extends LogFactory {
     // Note that this is effectively static. This could be problematic with if a log manager uses different contexts.
     // However it's not worth the overhead of trying to determine when a new attribute map would be required given that
     // it's like not a common API.
-    private final Map<String, Object> attributeMap = Collections.synchronizedMap(new HashMap<String, Object>());
+    // The attributes are an immutable snapshot which is replaced on each change. Reads never lock, writes are guarded
+    // by the attributeLock.
+    private final Object attributeLock = new Object();
+    private volatile Attributes attributes = Attributes.EMPTY;
     private final Logger logger = Logger.getLogger(JBossLogFactory.class.getPackage().getName());
+    private final JBossLogCache cache = new JBossLogCache(this);
+    private final NamePool names = new NamePool();
+    private volatile boolean cacheEnabled;
+    // The current generation of the levels, 0 if the level cache is disabled
+    private volatile int levelGeneration;
+    // Guarded by the attributeLock
+    private int lastLevelGeneration;
+    private volatile AsyncDispatcher asyncDispatcher;
+    // The settings the current dispatcher was created with, guarded by the attributeLock
+    private String asyncSettings;
+    private volatile LogPolicies policies;
+    // The settings the current policies were created with, guarded by the attributeLock
+    private String policySettings;
+    private volatile MessageCoalescer coalescer;
+    private volatile LoggerProvider provider;
+    // The setting the current provider was created with, guarded by the attributeLock
+    private String providerSettings;
+    private final LogStatistics statistics = new LogStatistics();
+    // The latency recorders for each level of each logger name, null if latencies are not recorded
+    private final LatencyRecorders latencyRecorders = LatencyRecorder.ENABLED ? new LatencyRecorders() : null;
+    private volatile boolean statisticsEnabled;
+    // The name the statistics are registered with, guarded by the attributeLock
+    private ObjectName statisticsName;
+    // The window of the current coalescer, guarded by the attributeLock
+    private int coalesceWindow;
+
+    public JBossLogFactory() {
+        configure();
+        if (LatencyRecorder.ENABLED) {
+            registerLatencyStatistics();
+        }
+    }
 
     @Override
     public Object getAttribute(final String name) {
-        return getAttributeMap().get(name);
+        return attributes.values.get(name);
     }
 
-
     @Override
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
     public String[] getAttributeNames() {
-        final Map<String, Object> attributes = getAttributeMap();
-        final String[] names;
-        synchronized (attributes) {
-            final Set<String> s = attributes.keySet();
-            names = s.toArray(new String[s.size()]);
-        }
-        return names;
+        final String[] names = attributes.names;
+        // Only the snapshot is shared, the caller gets its own copy
+        return names.length == 0 ? names : names.clone();
     }
 
     @Override
     public Log getInstance(final Class clazz) throws LogConfigurationException {
+        if (cacheEnabled) {
+            final ClassLoader classLoader = contextClassLoader();
+            // Only types loaded by the context class loader can be associated with the log as the context class
+            // loader determines which cache the log belongs to
+            if (classLoaderOf(clazz) == classLoader) {
+                return cache.getLog((Class<?>) clazz);
+            }
+            return cache.getLog(classLoader, clazz.getName());
+        }
         return getInstance(clazz.getName());
     }
 
     @Override
     public Log getInstance(final String name) throws LogConfigurationException {
-        // We always return a new log instance because this factory is effectively static. See the LogFactory.Holder.
-        // For details on why this done see WFCORE-254. If performance becomes an issue we can readdress the ability to
-        // store loggers in some kind of container.
-        return new JBossLog(name);
+        // By default we return a new log instance because this factory is effectively static. See the LogFactory.Holder.
+        // For details on why this done see WFCORE-254. When the cache is enabled the log is stored per context class
+        // loader so a log created for one deployment is never handed to another.
+        if (cacheEnabled) {
+            return cache.getLog(contextClassLoader(), name);
+        }
+        return new JBossLog(this, canonicalName(name));
     }
 
     @Override
     public void release() {
-        // Clear the attributes
-        getAttributeMap().clear();
+        synchronized (attributeLock) {
+            // Publish an empty snapshot rather than clearing the current one, which readers may still hold, then drop
+            // the cached state and reconfigure from the system properties alone
+            attributes = Attributes.EMPTY;
+            cache.clear();
+            if (latencyRecorders != null) {
+                latencyRecorders.clear();
+            }
+            configure();
+        }
+    }
+
+    /**
+     * Releases any cached {@link Log} instances associated with the class loader. Unlike {@link #release()} the
+     * attributes and the logs associated with other class loaders are left as they are.
+     *
+     * @param classLoader the class loader to release the logs for, may be {@code null}
+     */
+    public void releaseLogs(final ClassLoader classLoader) {
+        cache.remove(classLoader);
+    }
+
+    /**
+     * Notifies the factory that the log manager has been reconfigured. If the level cache is enabled the levels of
+     * each log are resolved again on the next {@code is*Enabled()} check.
+     *
+     * @see #LEVEL_CACHE_PROPERTY
+     */
+    public void levelsChanged() {
+        synchronized (attributeLock) {
+            if (levelGeneration != 0) {
+                levelGeneration = nextLevelGeneration();
+            }
+        }
+    }
+
+    /**
+     * Sets the JVM wide minimum level. Messages below the minimum level are never logged, and the
+     * {@code is*Enabled()} methods return {@code false}, regardless of the log manager configuration.
+     * <p>
+     * On Java 9 or higher checks for levels below the minimum are treated as constants once compiled. Changing the
+     * minimum level deoptimizes that code, so this is not meant to be changed frequently.
+     * </p>
+     *
+     * @param level the minimum level, one of {@code trace}, {@code debug}, {@code info}, {@code warn},
+     *              {@code error}, {@code fatal}, {@code off} or {@code all}. A {@code null} value allows all levels.
+     *
+     * @throws IllegalArgumentException if the level is not a known level
+     * @see #MINIMUM_LEVEL_PROPERTY
+     */
+    public static void setMinimumLevel(final String level) {
+        final int levels = allowedLevels(level);
+        if (levels < 0) {
+            throw new IllegalArgumentException(String.format("Level %s is not a known level.", level));
+        }
+        LevelFloor.setAllowedLevels(levels);
     }
 
     @Override
     public void removeAttribute(final String name) {
-        getAttributeMap().remove(name);
+        synchronized (attributeLock) {
+            attributes = attributes.without(name);
+            configure();
+        }
     }
 
     @Override
     public void setAttribute(final String name, final Object value) {
-        final Map<String, Object> attributes = getAttributeMap();
         if (value == null) {
-            attributes.remove(name);
+            removeAttribute(name);
         } else {
             if (!(value instanceof String)) {
                 logger.warnf("Attribute values must be of type java.lang.String. Attribute %s with value %s will be ignored.", name, value);
             } else if (UNSUPPORTED_PROPERTIES.contains(name)) {
                 logger.warnf("Attribute %s is not supported. Value %s will be ignored.", name, value);
             } else {
-                attributes.put(name, value);
+                synchronized (attributeLock) {
+                    attributes = attributes.with(name, value);
+                    configure();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the current settings from the attributes and system properties. Must be called while holding the
+     * attributeLock, with the exception of the constructor.
+     */
+    private void configure() {
+        final boolean enabled = Boolean.parseBoolean(getProperty(CACHE_PROPERTY));
+        if (cacheEnabled && !enabled) {
+            cache.clear();
+        }
+        cacheEnabled = enabled;
+        // Always start a new generation as the levels may have changed while the cache was disabled
+        levelGeneration = Boolean.parseBoolean(getProperty(LEVEL_CACHE_PROPERTY)) ? nextLevelGeneration() : 0;
+        configureAsync();
+        configureStatistics();
+        final String providerName = getProperty(PROVIDER_PROPERTY);
+        if (providerName == null ? providerSettings != null : !providerName.equals(providerSettings)) {
+            provider = providerName == null ? null : loadProvider(providerName.trim());
+            providerSettings = providerName;
+        }
+        final String rateLimits = getProperty(RATE_LIMIT_PROPERTY);
+        final String sampleRates = getProperty(SAMPLE_RATE_PROPERTY);
+        final String settings = rateLimits + "|" + sampleRates;
+        if (!settings.equals(policySettings)) {
+            // Only replace the policies when the settings change so the current limits are not reset
+            final LogPolicies previous = policies;
+            final LogPolicies replacement = LogPolicies.create(rateLimits, sampleRates, logger);
+            if (replacement != null) {
+                replacement.start("JBossLog-rate-limiter");
+            }
+            policies = replacement;
+            policySettings = settings;
+            if (previous != null) {
+                // Report the messages suppressed by the replaced rate limits
+                previous.close();
+            }
+        }
+        final int window = getIntProperty(COALESCE_WINDOW_PROPERTY, 0);
+        if (window != coalesceWindow) {
+            final MessageCoalescer previous = coalescer;
+            if (window == 0) {
+                coalescer = null;
+            } else {
+                final MessageCoalescer replacement = new MessageCoalescer(TimeUnit.MILLISECONDS.toNanos(window)) {
+                    @Override
+                    void repeated(final Object target, final int level, final String message, final long count) {
+                        ((JBossLog) target).repeated(level, message, count);
+                    }
+                };
+                replacement.start("JBossLog-coalescer");
+                coalescer = replacement;
+            }
+            if (previous != null) {
+                // Report the repeats counted by the replaced coalescer
+                previous.close();
             }
+            coalesceWindow = window;
         }
     }
 
-    private Map<String, Object> getAttributeMap() {
-        return attributeMap;
+    /**
+     * Returns the number of sampling decisions which allowed a message to be logged.
+     *
+     * @return the number of sampled messages
+     *
+     * @see #SAMPLE_RATE_PROPERTY
+     */
+    public long getSampledCount() {
+        return statistics.getSampledCalls();
+    }
+
+    /**
+     * Returns the number of sampling decisions which dropped a message.
+     *
+     * @return the number of dropped messages
+     *
+     * @see #SAMPLE_RATE_PROPERTY
+     */
+    public long getSampleDroppedCount() {
+        return statistics.getSampleDroppedCalls();
+    }
+
+    /**
+     * Records a sampling decision.
+     *
+     * @param sampled {@code true} if the message is logged, {@code false} if it was dropped
+     */
+    void sampled(final boolean sampled) {
+        statistics.sampled(sampled);
+    }
+
+    /**
+     * Returns the statistics of this factory. The statistics are only collected while the
+     * {@linkplain #STATISTICS_PROPERTY statistics property} is enabled.
+     *
+     * @return the statistics
+     */
+    public LogStatisticsMXBean getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The statistics to record messages in or {@code null} if statistics are disabled.
+     *
+     * @return the statistics or {@code null}
+     */
+    LogStatistics statistics() {
+        return statisticsEnabled ? statistics : null;
+    }
+
+    /**
+     * Records the creation of a logger if statistics are enabled.
+     */
+    void loggerCreated() {
+        final LogStatistics statistics = statistics();
+        if (statistics != null) {
+            statistics.loggerCreated();
+        }
+    }
+
+    /**
+     * Returns the latencies of the calls to the delegate loggers recorded since the previous call and starts a new
+     * interval. Latencies are only recorded if the {@link #LATENCY_PROPERTY} system property is enabled.
+     * <p>
+     * Sampling resets the recorded latencies, so there should only be one reader. If the latencies are sampled from
+     * more than one place, for example by two JMX clients, each reader only sees the latencies recorded since the
+     * other last sampled them.
+     * </p>
+     *
+     * @return the latencies for each logger and level which logged messages in the interval, empty if latencies are
+     * not recorded
+     */
+    public List<LatencySnapshot> sampleLatencies() {
+        if (latencyRecorders == null) {
+            return Collections.emptyList();
+        }
+        final List<LatencySnapshot> result = new ArrayList<LatencySnapshot>();
+        final long[] counts = new long[LatencyHistogram.BUCKETS];
+        for (Map.Entry<String, LatencyRecorders.Levels> entry : latencyRecorders.copy().entrySet()) {
+            final AtomicReferenceArray<LatencyRecorder> recorders = entry.getValue();
+            for (int i = 0; i < recorders.length(); i++) {
+                final LatencyRecorder recorder = recorders.get(i);
+                if (recorder != null) {
+                    Arrays.fill(counts, 0L);
+                    final long sum = recorder.drainTo(counts);
+                    final LatencySnapshot snapshot = LatencySnapshot.create(entry.getKey(), JBossLog.toLevel(1 << i).name(), counts, sum);
+                    if (snapshot != null) {
+                        result.add(snapshot);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the latency recorders, indexed by level, for the logger name.
+     *
+     * @param name the {@linkplain #canonicalName(String) canonical} logger name, the recorders are retained as long as
+     *             the name is
+     *
+     * @return the recorders, an element is {@code null} until a latency is recorded for the level
+     */
+    LatencyRecorders.Levels latencyRecorders(final String name) {
+        return latencyRecorders.get(name);
+    }
+
+    private void registerLatencyStatistics() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(LatencyStatisticsMXBean.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // Another copy of the library is loaded by a different class loader
+                name = new ObjectName(LatencyStatisticsMXBean.OBJECT_NAME + ",id=" + Integer.toHexString(System.identityHashCode(this)));
+            }
+            server.registerMBean(new LatencyStatisticsMXBean() {
+                @Override
+                public List<LatencySnapshot> sampleLatencies() {
+                    return JBossLogFactory.this.sampleLatencies();
+                }
+            }, name);
+        } catch (Exception e) {
+            // The latencies are still available from sampleLatencies()
+            logger.debugf(e, "Failed to register the latency MBean");
+        }
+    }
+
+    /**
+     * Returns the canonical instance of the logger name. Logs hold the canonical instance so equal names created at
+     * runtime are not retained once per log.
+     *
+     * @param name the logger name
+     *
+     * @return the canonical instance of the name
+     */
+    String canonicalName(final String name) {
+        return names.intern(name);
+    }
+
+    /**
+     * Returns the delegate logger for the name, created with the {@linkplain #PROVIDER_PROPERTY pinned provider} if
+     * there is one.
+     *
+     * @param name the logger name
+     *
+     * @return the delegate logger
+     */
+    Logger getDelegate(final String name) {
+        final LoggerProvider provider = this.provider;
+        return provider == null ? Logger.getLogger(name) : provider.getLogger(name);
+    }
+
+    private LoggerProvider loadProvider(final String value) {
+        final String className = PROVIDERS.containsKey(value) ? PROVIDERS.get(value) : value;
+        try {
+            return AccessController.doPrivileged(new PrivilegedExceptionAction<LoggerProvider>() {
+                @Override
+                public LoggerProvider run() throws Exception {
+                    Class<?> type;
+                    try {
+                        type = Class.forName(className, true, Logger.class.getClassLoader());
+                    } catch (ClassNotFoundException e) {
+                        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+                        if (cl == null) {
+                            throw e;
+                        }
+                        type = Class.forName(className, true, cl);
+                    }
+                    // The providers in JBoss Logging are not public
+                    final Constructor<? extends LoggerProvider> constructor = type.asSubclass(LoggerProvider.class).getDeclaredConstructor();
+                    constructor.setAccessible(true);
+                    return constructor.newInstance();
+                }
+            });
+        } catch (Throwable t) {
+            // The provider may fail to initialize if the backend is not present
+            logger.warnf(t, "Could not create the logger provider %s. The default provider will be used.", value);
+            return null;
+        }
+    }
+
+    private void configureStatistics() {
+        final boolean enabled = Boolean.parseBoolean(getProperty(STATISTICS_PROPERTY));
+        if (enabled && statisticsName == null) {
+            statisticsName = registerStatistics();
+        } else if (!enabled && statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (Exception e) {
+                logger.debugf(e, "Failed to unregister %s", statisticsName);
+            }
+            statisticsName = null;
+        }
+        statisticsEnabled = enabled;
+    }
+
+    private ObjectName registerStatistics() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(LogStatisticsMXBean.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // Another copy of the library is loaded by a different class loader
+                name = new ObjectName(LogStatisticsMXBean.OBJECT_NAME + ",id=" + Integer.toHexString(System.identityHashCode(this)));
+            }
+            server.registerMBean(statistics, name);
+            return name;
+        } catch (Exception e) {
+            // The statistics are still collected and available from getStatistics()
+            logger.debugf(e, "Failed to register the statistics MBean");
+            return null;
+        }
+    }
+
+    /**
+     * The coalescer for repeated messages or {@code null} if messages are not coalesced.
+     *
+     * @return the coalescer or {@code null}
+     */
+    MessageCoalescer coalescer() {
+        return coalescer;
+    }
+
+    /**
+     * The policies applied to messages or {@code null} if there are no policies.
+     *
+     * @return the policies or {@code null}
+     */
+    LogPolicies policies() {
+        return policies;
+    }
+
+    /**
+     * The dispatcher used to log asynchronously or {@code null} if asynchronous logging is disabled.
+     *
+     * @return the dispatcher or {@code null}
+     */
+    AsyncDispatcher asyncDispatcher() {
+        return asyncDispatcher;
+    }
+
+    private void configureAsync() {
+        final AsyncDispatcher current = asyncDispatcher;
+        if (Boolean.parseBoolean(getProperty(ASYNC_PROPERTY))) {
+            final int queueLength = getIntProperty(ASYNC_QUEUE_LENGTH_PROPERTY, DEFAULT_ASYNC_QUEUE_LENGTH);
+            final AsyncDispatcher.WaitStrategy waitStrategy = getEnumProperty(ASYNC_WAIT_STRATEGY_PROPERTY,
+                    AsyncDispatcher.WaitStrategy.PARK);
+            final AsyncDispatcher.OverflowPolicy overflowPolicy = getEnumProperty(ASYNC_OVERFLOW_POLICY_PROPERTY,
+                    AsyncDispatcher.OverflowPolicy.BLOCK);
+            final String settings = queueLength + ":" + waitStrategy + ":" + overflowPolicy;
+            if (current == null || !settings.equals(asyncSettings)) {
+                asyncDispatcher = new AsyncDispatcher("commons-logging-async", queueLength, waitStrategy, overflowPolicy) {
+                    @Override
+                    void deliver(final Event event) {
+                        JBossLog.deliver(event);
+                    }
+                };
+                asyncSettings = settings;
+                if (current != null) {
+                    current.close();
+                }
+            }
+        } else if (current != null) {
+            asyncDispatcher = null;
+            asyncSettings = null;
+            current.close();
+        }
+    }
+
+    private int getIntProperty(final String name, final int defaultValue) {
+        final String value = getProperty(name);
+        if (value != null) {
+            try {
+                final int result = Integer.parseInt(value.trim());
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+            logger.warnf("Value %s for %s is not a positive integer. The default value %d will be used.", value, name, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private <E extends Enum<E>> E getEnumProperty(final String name, final E defaultValue) {
+        final String value = getProperty(name);
+        if (value != null) {
+            try {
+                return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+            } catch (IllegalArgumentException ignore) {
+            }
+            logger.warnf("Value %s for %s is not valid. The default value %s will be used.", value, name,
+                    defaultValue.name().toLowerCase(Locale.ENGLISH).replace('_', '-'));
+        }
+        return defaultValue;
+    }
+
+    /**
+     * The current generation of the levels or 0 if the level cache is disabled.
+     *
+     * @return the level generation
+     */
+    int levelGeneration() {
+        return levelGeneration;
+    }
+
+    private int nextLevelGeneration() {
+        int next = (lastLevelGeneration + 1) & JBossLog.MAX_GENERATION;
+        if (next == 0) {
+            next = 1;
+        }
+        return lastLevelGeneration = next;
+    }
+
+    /**
+     * Returns the value of the attribute or, if the attribute is not set, the value of the system property.
+     */
+    private String getProperty(final String name) {
+        final Object value = attributes.values.get(name);
+        if (value != null) {
+            return String.valueOf(value);
+        }
+        try {
+            return System.getProperty(name);
+        } catch (SecurityException ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the allowed levels from the {@linkplain #MINIMUM_LEVEL_PROPERTY minimum level system property}. An invalid
+     * value is ignored.
+     *
+     * @return the bit mask of the allowed levels
+     */
+    static int readMinimumLevel() {
+        String value = null;
+        try {
+            value = System.getProperty(MINIMUM_LEVEL_PROPERTY);
+        } catch (SecurityException ignore) {
+        }
+        final int levels = allowedLevels(value);
+        return levels < 0 ? LogLevels.ALL : levels;
+    }
+
+    /**
+     * Returns the bit mask of the levels at or above the minimum level or -1 if the level is not known.
+     */
+    private static int allowedLevels(final String minimumLevel) {
+        if (minimumLevel == null || "all".equalsIgnoreCase(minimumLevel) || "trace".equalsIgnoreCase(minimumLevel)) {
+            return LogLevels.ALL;
+        } else if ("debug".equalsIgnoreCase(minimumLevel)) {
+            return LogLevels.ALL & ~LogLevels.TRACE;
+        } else if ("info".equalsIgnoreCase(minimumLevel)) {
+            return LogLevels.INFO | LogLevels.WARN | LogLevels.ERROR | LogLevels.FATAL;
+        } else if ("warn".equalsIgnoreCase(minimumLevel)) {
+            return LogLevels.WARN | LogLevels.ERROR | LogLevels.FATAL;
+        } else if ("error".equalsIgnoreCase(minimumLevel)) {
+            return LogLevels.ERROR | LogLevels.FATAL;
+        } else if ("fatal".equalsIgnoreCase(minimumLevel)) {
+            return LogLevels.FATAL;
+        } else if ("off".equalsIgnoreCase(minimumLevel)) {
+            return 0;
+        }
+        return -1;
+    }
+
+    static ClassLoader classLoaderOf(final Class<?> type) {
+        if (System.getSecurityManager() == null) {
+            return type.getClassLoader();
+        }
+        return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
+            @Override
+            public ClassLoader run() {
+                return type.getClassLoader();
+            }
+        });
+    }
+
+    private static ClassLoader contextClassLoader() {
+        if (System.getSecurityManager() == null) {
+            return Thread.currentThread().getContextClassLoader();
+        }
+        return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
+            @Override
+            public ClassLoader run() {
+                return Thread.currentThread().getContextClassLoader();
+            }
+        });
+    }
+
+    /**
+     * An immutable snapshot of the attributes.
+     */
+    private static final class Attributes {
+        static final Attributes EMPTY = new Attributes(Collections.<String, Object>emptyMap());
+
+        final Map<String, Object> values;
+        final String[] names;
+
+        private Attributes(final Map<String, Object> values) {
+            this.values = values;
+            final Set<String> keys = values.keySet();
+            names = keys.toArray(new String[keys.size()]);
+        }
+
+        Attributes with(final String name, final Object value) {
+            final Map<String, Object> copy = new HashMap<String, Object>(values);
+            copy.put(name, value);
+            return new Attributes(Collections.unmodifiableMap(copy));
+        }
+
+        Attributes without(final String name) {
+            if (!values.containsKey(name)) {
+                return this;
+            }
+            final Map<String, Object> copy = new HashMap<String, Object>(values);
+            copy.remove(name);
+            return copy.isEmpty() ? EMPTY : new Attributes(Collections.unmodifiableMap(copy));
+        }
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds with log-linear buckets.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} linear buckets, so a recorded value is within 12.5% of the
+ * value reported for its bucket. Values of 2<sup>40</sup> nanoseconds, about 18 minutes, or more are counted in the
+ * last bucket. Recording a value never allocates or locks.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(final long nanos) {
+        counts.getAndIncrement(bucket(nanos));
+        sum.getAndAdd(nanos);
+    }
+
+    /**
+     * Moves the recorded values to the arrays and resets this histogram. Must not be called while values are being
+     * recorded.
+     *
+     * @param target the counts of each bucket are added to this array
+     *
+     * @return the sum of the recorded values
+     */
+    long drainTo(final long[] target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0L) {
+                target[i] += counts.getAndSet(i, 0L);
+            }
+        }
+        return sum.getAndSet(0L);
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     *
+     * @param nanos the value
+     *
+     * @return the index of the bucket
+     */
+    static int bucket(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0L ? 0 : (int) nanos;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     *
+     * @return the largest value of the bucket
+     */
+    static long highestValue(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        final long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1L;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records latencies into one of two {@linkplain LatencyHistogram histograms} so the values recorded within an interval
+ * can be read without stopping the writers.
+ * <p>
+ * Writers never lock. Each writer enters a critical section by incrementing a start epoch, the sign of which selects
+ * the active histogram, and leaves it by incrementing the end epoch of the same phase. The reader swaps the active
+ * histogram by resetting the start epoch and then waits until every writer which entered the old phase has left it,
+ * after which the inactive histogram can be read and reset safely.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LatencyRecorder {
+
+    /**
+     * Whether latencies are recorded, read once from the {@link JBossLogFactory#LATENCY_PROPERTY} system property. As
+     * this is a constant the recording code is removed by the JIT when it is disabled.
+     */
+    static final boolean ENABLED = isEnabled();
+
+    private final LatencyHistogram even = new LatencyHistogram();
+    private final LatencyHistogram odd = new LatencyHistogram();
+    // Negative while the odd histogram is active
+    private final AtomicLong startEpoch = new AtomicLong();
+    private final AtomicLong evenEndEpoch = new AtomicLong();
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(final long nanos) {
+        final long epoch = startEpoch.getAndIncrement();
+        if (epoch < 0L) {
+            odd.record(nanos);
+            oddEndEpoch.getAndIncrement();
+        } else {
+            even.record(nanos);
+            evenEndEpoch.getAndIncrement();
+        }
+    }
+
+    /**
+     * Moves the latencies recorded since the last call to the array.
+     *
+     * @param counts the counts of each bucket are added to this array, the length must be
+     *               {@link LatencyHistogram#BUCKETS}
+     *
+     * @return the sum of the latencies recorded
+     */
+    synchronized long drainTo(final long[] counts) {
+        final boolean nextPhaseIsEven = startEpoch.get() < 0L;
+        final long initialStartValue = nextPhaseIsEven ? 0L : Long.MIN_VALUE;
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+        final long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        // Wait for the writers still recording into the previous histogram
+        final AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousEndEpoch.get() != startValueAtFlip) {
+            Thread.yield();
+        }
+        return (nextPhaseIsEven ? odd : even).drainTo(counts);
+    }
+
+    private static boolean isEnabled() {
+        try {
+            return Boolean.getBoolean(JBossLogFactory.LATENCY_PROPERTY);
+        } catch (SecurityException ignore) {
+            return false;
+        }
+    }
+}
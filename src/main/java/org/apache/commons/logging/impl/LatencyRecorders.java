@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latency recorders for each level of each logger name.
+ * <p>
+ * The recorders are keyed weakly by the canonical instance of the logger name, which each log holds on to. Once no
+ * log refers to a name, for example after a deployment is undeployed or for names built at runtime, its recorders are
+ * collected. The recorders are kept apart from the logs so recording latencies does not add to the size of each log.
+ * </p>
+ * <p>
+ * Nothing locks. Recording a latency first looks the recorders up in a direct mapped cache, which only refers to the
+ * names weakly. A name which misses the cache is looked up in a concurrent map and, the first time, its recorders are
+ * installed with {@link ConcurrentMap#putIfAbsent(Object, Object)}.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LatencyRecorders {
+    private static final int LEVELS = 6;
+    private static final int CACHE_SIZE = 1024;
+
+    // Keyed by the weak reference to the name held by the recorders, so the map never strongly refers to a name
+    private final ConcurrentMap<Object, Levels> recorders = new ConcurrentHashMap<Object, Levels>();
+    private final ReferenceQueue<String> collected = new ReferenceQueue<String>();
+    private final AtomicReferenceArray<Levels> cache = new AtomicReferenceArray<Levels>(CACHE_SIZE);
+
+    /**
+     * Returns the recorders, indexed by level, for the logger name.
+     *
+     * @param name the canonical instance of the logger name, the recorders are retained as long as the name is
+     *
+     * @return the recorders, an element is {@code null} until a latency is recorded for the level
+     */
+    Levels get(final String name) {
+        final int hash = name.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        final Levels cached = cache.get(index);
+        if (cached != null) {
+            final String cachedName = cached.name.get();
+            if (cachedName == name || name.equals(cachedName)) {
+                return cached;
+            }
+        }
+        Levels result = recorders.get(new Lookup(name));
+        if (result == null) {
+            expunge();
+            final Levels added = new Levels(name, collected);
+            result = recorders.putIfAbsent(added.name, added);
+            if (result == null) {
+                result = added;
+            }
+        }
+        // A racing lookup of another name may replace the entry, which only costs it a miss
+        cache.set(index, result);
+        return result;
+    }
+
+    /**
+     * Returns a copy of the recorders of each logger name.
+     *
+     * @return the recorders keyed by logger name
+     */
+    Map<String, Levels> copy() {
+        expunge();
+        final Map<String, Levels> result = new HashMap<String, Levels>();
+        for (Levels levels : recorders.values()) {
+            final String name = levels.name.get();
+            if (name != null) {
+                result.put(name, levels);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the recorders.
+     */
+    void clear() {
+        recorders.clear();
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            cache.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the number of logger names with recorders. Names which have been collected may still be counted.
+     *
+     * @return the number of logger names
+     */
+    int size() {
+        expunge();
+        return recorders.size();
+    }
+
+    private void expunge() {
+        Reference<? extends String> reference;
+        while ((reference = collected.poll()) != null) {
+            recorders.remove(reference);
+        }
+    }
+
+    /**
+     * The recorders for each level of a logger name.
+     */
+    static final class Levels extends AtomicReferenceArray<LatencyRecorder> {
+        private static final long serialVersionUID = 1L;
+
+        final Name name;
+
+        Levels(final String name, final ReferenceQueue<String> queue) {
+            super(LEVELS);
+            this.name = new Name(name, queue);
+        }
+    }
+
+    /**
+     * The key of the recorders of a name. Once the name is collected it is only equal to itself, so it can still be
+     * removed.
+     */
+    private static final class Name extends WeakReference<String> {
+        private final int hash;
+
+        Name(final String name, final ReferenceQueue<String> queue) {
+            super(name, queue);
+            hash = name.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            final String name = get();
+            if (name == null) {
+                return false;
+            }
+            if (obj instanceof Name) {
+                return name.equals(((Name) obj).get());
+            }
+            return obj instanceof Lookup && name.equals(((Lookup) obj).name);
+        }
+    }
+
+    /**
+     * The key the recorders of a name are looked up with, which compares equal to the key of an equal name.
+     */
+    private static final class Lookup {
+        private final String name;
+
+        Lookup(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof Name) {
+                return name.equals(((Name) obj).get());
+            }
+            return obj instanceof Lookup && name.equals(((Lookup) obj).name);
+        }
+    }
+}
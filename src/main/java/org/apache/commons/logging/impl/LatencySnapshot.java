@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+
+/**
+ * The latencies of the messages logged at a level by a logger within an interval. All the latencies are in
+ * nanoseconds and, apart from the mean, are the highest value of the histogram bucket the latency fell in.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ * @see JBossLogFactory#sampleLatencies()
+ */
+public final class LatencySnapshot implements Serializable {
+    private static final long serialVersionUID = -3358183711745683537L;
+
+    private final String loggerName;
+    private final String level;
+    private final long count;
+    private final long mean;
+    private final long median;
+    private final long percentile90;
+    private final long percentile99;
+    private final long percentile999;
+    private final long max;
+
+    @ConstructorProperties({"loggerName", "level", "count", "mean", "median", "percentile90", "percentile99", "percentile999", "max"})
+    public LatencySnapshot(final String loggerName, final String level, final long count, final long mean, final long median,
+                           final long percentile90, final long percentile99, final long percentile999, final long max) {
+        this.loggerName = loggerName;
+        this.level = level;
+        this.count = count;
+        this.mean = mean;
+        this.median = median;
+        this.percentile90 = percentile90;
+        this.percentile99 = percentile99;
+        this.percentile999 = percentile999;
+        this.max = max;
+    }
+
+    /**
+     * Creates a snapshot from the buckets of a histogram.
+     */
+    static LatencySnapshot create(final String loggerName, final String level, final long[] counts, final long sum) {
+        long count = 0L;
+        for (long c : counts) {
+            count += c;
+        }
+        if (count == 0L) {
+            return null;
+        }
+        final double[] percentiles = {0.5, 0.9, 0.99, 0.999};
+        final long[] values = new long[percentiles.length];
+        int next = 0;
+        long seen = 0L;
+        long max = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0L) {
+                continue;
+            }
+            seen += counts[i];
+            max = LatencyHistogram.highestValue(i);
+            while (next < percentiles.length && seen >= (long) Math.ceil(percentiles[next] * count)) {
+                values[next++] = max;
+            }
+        }
+        return new LatencySnapshot(loggerName, level, count, sum / count, values[0], values[1], values[2], values[3], max);
+    }
+
+    /**
+     * The name of the logger.
+     *
+     * @return the logger name
+     */
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    /**
+     * The level of the messages.
+     *
+     * @return the level
+     */
+    public String getLevel() {
+        return level;
+    }
+
+    /**
+     * The number of messages logged in the interval.
+     *
+     * @return the number of messages
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The mean latency.
+     *
+     * @return the mean latency
+     */
+    public long getMean() {
+        return mean;
+    }
+
+    /**
+     * The median latency.
+     *
+     * @return the median latency
+     */
+    public long getMedian() {
+        return median;
+    }
+
+    /**
+     * The 90th percentile latency.
+     *
+     * @return the 90th percentile latency
+     */
+    public long getPercentile90() {
+        return percentile90;
+    }
+
+    /**
+     * The 99th percentile latency.
+     *
+     * @return the 99th percentile latency
+     */
+    public long getPercentile99() {
+        return percentile99;
+    }
+
+    /**
+     * The 99.9th percentile latency.
+     *
+     * @return the 99.9th percentile latency
+     */
+    public long getPercentile999() {
+        return percentile999;
+    }
+
+    /**
+     * The highest latency.
+     *
+     * @return the highest latency
+     */
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[loggerName=%s, level=%s, count=%d, mean=%d, median=%d, p90=%d, p99=%d, p999=%d, max=%d]",
+                getClass().getSimpleName(), loggerName, level, count, mean, median, percentile90, percentile99, percentile999, max);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.List;
+
+/**
+ * The latency of the calls to the delegate loggers. Only registered when the
+ * {@linkplain JBossLogFactory#LATENCY_PROPERTY latency system property} is enabled.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public interface LatencyStatisticsMXBean {
+
+    /**
+     * The name the latency statistics are registered with on the platform MBean server.
+     */
+    String OBJECT_NAME = "org.apache.commons.logging:type=JBossLogFactory,name=latency";
+
+    /**
+     * Returns the latencies recorded since the previous call and starts a new interval. Sampling resets the recorded
+     * latencies, so if more than one client samples them each client only sees part of the latencies.
+     *
+     * @return the latencies for each logger and level which logged messages in the interval
+     *
+     * @see JBossLogFactory#sampleLatencies()
+     */
+    List<LatencySnapshot> sampleLatencies();
+}
@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * Holds the levels allowed by the JVM wide minimum level.
+ * <p>
+ * On Java 9 or higher a version of this type which allows the JIT to treat the allowed levels as a constant is used.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ * @see JBossLogFactory#setMinimumLevel(String)
+ */
+final class LevelFloor {
+    private static volatile int allowedLevels = JBossLogFactory.readMinimumLevel();
+
+    private LevelFloor() {
+    }
+
+    /**
+     * Checks if the level is allowed by the minimum level.
+     *
+     * @param level the {@link LogLevels} bit of the level
+     *
+     * @return {@code true} if the level is allowed
+     */
+    static boolean isAllowed(final int level) {
+        return (allowedLevels & level) != 0;
+    }
+
+    /**
+     * Returns the bit mask of the levels allowed by the minimum level.
+     *
+     * @return the allowed levels
+     */
+    static int allowedLevels() {
+        return allowedLevels;
+    }
+
+    /**
+     * Sets the levels allowed.
+     *
+     * @param levels the bit mask of the allowed levels
+     */
+    static void setAllowedLevels(final int levels) {
+        allowedLevels = levels;
+    }
+}
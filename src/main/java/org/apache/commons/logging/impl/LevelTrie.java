@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable prefix trie mapping logger names to levels.
+ * <p>
+ * A level configured for a name applies to the name itself and to every name below it in the dot separated
+ * hierarchy. A {@linkplain #level(String) lookup} is a single walk over the characters of the name which returns the
+ * level of the longest configured prefix. Nothing is allocated during the lookup.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LevelTrie {
+    private static final int NO_LEVEL = Integer.MIN_VALUE;
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+    private final int defaultLevel;
+
+    private LevelTrie(final Node root, final int defaultLevel) {
+        this.root = root;
+        this.defaultLevel = defaultLevel;
+    }
+
+    /**
+     * Creates a trie for the levels.
+     *
+     * @param levels       the levels keyed by the logger name they apply to
+     * @param defaultLevel the level for names which no configured name applies to
+     *
+     * @return the trie
+     */
+    static LevelTrie create(final Map<String, Integer> levels, final int defaultLevel) {
+        final Builder root = new Builder();
+        for (Map.Entry<String, Integer> entry : levels.entrySet()) {
+            final String name = entry.getKey();
+            Builder builder = root;
+            for (int i = 0; i < name.length(); i++) {
+                final Character c = name.charAt(i);
+                Builder child = builder.children.get(c);
+                if (child == null) {
+                    child = new Builder();
+                    builder.children.put(c, child);
+                }
+                builder = child;
+            }
+            builder.level = entry.getValue();
+        }
+        return new LevelTrie(root.build(), defaultLevel);
+    }
+
+    /**
+     * Returns the level for the logger name. This is the level of the longest configured name which is either the
+     * name itself or a prefix of the name followed by a {@code '.'}.
+     *
+     * @param name the logger name
+     *
+     * @return the level for the name or the default level if no configured name applies
+     */
+    int level(final String name) {
+        final int length = name.length();
+        int level = NO_LEVEL;
+        Node node = root;
+        for (int i = 0; ; i++) {
+            if (node.level != NO_LEVEL && (i == length || name.charAt(i) == '.')) {
+                level = node.level;
+            }
+            if (i == length) {
+                break;
+            }
+            node = node.child(name.charAt(i));
+            if (node == null) {
+                break;
+            }
+        }
+        return level == NO_LEVEL ? defaultLevel : level;
+    }
+
+    private static final class Node {
+        // Sorted so children can be found with a binary search
+        private final char[] keys;
+        private final Node[] children;
+        private final int level;
+
+        private Node(final char[] keys, final Node[] children, final int level) {
+            this.keys = keys;
+            this.children = children;
+            this.level = level;
+        }
+
+        Node child(final char c) {
+            final int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    private static final class Builder {
+        final Map<Character, Builder> children = new TreeMap<Character, Builder>();
+        int level = NO_LEVEL;
+
+        Node build() {
+            if (children.isEmpty()) {
+                return new Node(NO_KEYS, NO_CHILDREN, level);
+            }
+            final char[] keys = new char[children.size()];
+            final Node[] nodes = new Node[keys.length];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i++] = entry.getValue().build();
+            }
+            return new Node(keys, nodes, level);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Allows the enabled levels of a {@link Log} to be checked with a single call.
+ * <p>
+ * Example:
+ * <pre>
+ *     final int levels = LogLevels.enabledLevels(log);
+ *     if ((levels &amp; (LogLevels.DEBUG | LogLevels.TRACE)) != 0) {
+ *         ...
+ *     }
+ * </pre>
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class LogLevels {
+
+    /**
+     * The bit set if trace messages are enabled.
+     */
+    public static final int TRACE = 1;
+    /**
+     * The bit set if debug messages are enabled.
+     */
+    public static final int DEBUG = 1 << 1;
+    /**
+     * The bit set if info messages are enabled.
+     */
+    public static final int INFO = 1 << 2;
+    /**
+     * The bit set if warn messages are enabled.
+     */
+    public static final int WARN = 1 << 3;
+    /**
+     * The bit set if error messages are enabled.
+     */
+    public static final int ERROR = 1 << 4;
+    /**
+     * The bit set if fatal messages are enabled.
+     */
+    public static final int FATAL = 1 << 5;
+    /**
+     * All the level bits.
+     */
+    public static final int ALL = TRACE | DEBUG | INFO | WARN | ERROR | FATAL;
+
+    private LogLevels() {
+    }
+
+    /**
+     * Returns a bit mask of the levels enabled on the log.
+     *
+     * @param log the log to check
+     *
+     * @return the enabled levels
+     */
+    public static int enabledLevels(final Log log) {
+        if (log instanceof JBossLog) {
+            return ((JBossLog) log).enabledLevels();
+        }
+        if (log instanceof SimpleLog) {
+            final int level = ((SimpleLog) log).getLevel();
+            // SimpleLog levels are numerically ordered starting at 1 for trace
+            return level <= SimpleLog.LOG_LEVEL_TRACE ? ALL : (ALL << (level - 1)) & ALL;
+        }
+        int levels = 0;
+        if (log.isTraceEnabled()) {
+            levels |= TRACE;
+        }
+        if (log.isDebugEnabled()) {
+            levels |= DEBUG;
+        }
+        if (log.isInfoEnabled()) {
+            levels |= INFO;
+        }
+        if (log.isWarnEnabled()) {
+            levels |= WARN;
+        }
+        if (log.isErrorEnabled()) {
+            levels |= ERROR;
+        }
+        if (log.isFatalEnabled()) {
+            levels |= FATAL;
+        }
+        return levels;
+    }
+}
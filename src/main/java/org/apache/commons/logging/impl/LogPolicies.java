@@ -0,0 +1,351 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+/**
+ * An immutable snapshot of the policies applied to messages before they are logged. Each {@link JBossLog} resolves
+ * the policies which apply to it once per snapshot into a {@link LogPolicy}.
+ * <p>
+ * If there are rate limits a daemon thread ends the periods of the rate limiters which no message has ended, so the
+ * number of suppressed messages is reported once the period ends even if no further message is logged.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LogPolicies {
+    private static final int LEVEL_COUNT = 6;
+    private static final String ALL_LOGGERS = "*";
+    private static final int SAMPLED_LEVELS = LogLevels.TRACE | LogLevels.DEBUG;
+    // Most specific rules first
+    private static final Comparator<Rule> RULE_ORDER = new Comparator<Rule>() {
+        @Override
+        public int compare(final Rule o1, final Rule o2) {
+            // Longer prefixes first, the wildcard last and for the same prefix rules for a single level first
+            final int l1 = ALL_LOGGERS.equals(o1.prefix) ? -1 : o1.prefix.length();
+            final int l2 = ALL_LOGGERS.equals(o2.prefix) ? -1 : o2.prefix.length();
+            if (l1 != l2) {
+                return l1 > l2 ? -1 : 1;
+            }
+            return Integer.bitCount(o1.levels) - Integer.bitCount(o2.levels);
+        }
+    };
+
+    private final List<RateLimitRule> rateLimitRules;
+    private final List<SampleRule> sampleRules;
+    // The thread ending the periods of the rate limiters, null once closed
+    private volatile Thread sweeper;
+
+    private LogPolicies(final List<RateLimitRule> rateLimitRules, final List<SampleRule> sampleRules) {
+        this.rateLimitRules = rateLimitRules;
+        this.sampleRules = sampleRules;
+    }
+
+    /**
+     * Creates the policies from the configuration.
+     *
+     * @param rateLimits  the rate limit rules, see {@link JBossLogFactory#RATE_LIMIT_PROPERTY}
+     * @param sampleRates the sample rate rules, see {@link JBossLogFactory#SAMPLE_RATE_PROPERTY}
+     * @param logger      the logger used to report invalid configuration
+     *
+     * @return the policies or {@code null} if there are no policies
+     */
+    static LogPolicies create(final String rateLimits, final String sampleRates, final Logger logger) {
+        final List<RateLimitRule> rateLimitRules = new ArrayList<RateLimitRule>();
+        for (Rule rule : parseRules(rateLimits, LogLevels.ALL, "Rate limit %s is not valid and will be ignored. The format is prefix[:level]=permits/seconds.", logger)) {
+            if (rule.denominator > 0L) {
+                rateLimitRules.add(new RateLimitRule(rule, TimeUnit.SECONDS.toNanos(rule.denominator)));
+            } else {
+                logger.warnf("Rate limit %s is not valid and will be ignored. The number of seconds must be positive.", rule.entry);
+            }
+        }
+        final List<SampleRule> sampleRules = new ArrayList<SampleRule>();
+        for (Rule rule : parseRules(sampleRates, SAMPLED_LEVELS, "Sample rate %s is not valid and will be ignored. The format is prefix[:level]=messages/total.", logger)) {
+            if (rule.denominator > 0L && rule.numerator <= rule.denominator && (rule.levels & ~SAMPLED_LEVELS) == 0) {
+                sampleRules.add(new SampleRule(rule));
+            } else {
+                logger.warnf("Sample rate %s is not valid and will be ignored. Only trace and debug messages can be sampled at a rate of at most 1.", rule.entry);
+            }
+        }
+        if (rateLimitRules.isEmpty() && sampleRules.isEmpty()) {
+            return null;
+        }
+        return new LogPolicies(rateLimitRules, sampleRules);
+    }
+
+    /**
+     * Starts the daemon thread which reports the messages suppressed by the rate limits once their period ends. Does
+     * nothing if there are no rate limits.
+     *
+     * @param name the name of the thread
+     */
+    void start(final String name) {
+        if (rateLimitRules.isEmpty()) {
+            return;
+        }
+        final Thread thread = AsyncDispatcher.createThread(name, new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        });
+        sweeper = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the sweeping thread and reports the messages suppressed by the rate limits, whether or not their period
+     * has ended.
+     */
+    void close() {
+        final Thread thread = sweeper;
+        sweeper = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        expire(0L, true);
+    }
+
+    private void sweep() {
+        long intervalNanos = Long.MAX_VALUE;
+        for (RateLimitRule rule : rateLimitRules) {
+            intervalNanos = Math.min(intervalNanos, rule.periodNanos);
+        }
+        final long intervalMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+        while (sweeper == Thread.currentThread()) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            expire(System.nanoTime(), false);
+        }
+    }
+
+    /**
+     * Ends the periods of the rate limiters which have ended and reports the suppressed messages. Invoked periodically
+     * by the sweeping thread.
+     *
+     * @param now the current {@link System#nanoTime() time}
+     * @param all {@code true} to report the suppressed messages of every rate limiter regardless of its period
+     */
+    void expire(final long now, final boolean all) {
+        for (RateLimitRule rule : rateLimitRules) {
+            for (int i = 0; i < LEVEL_COUNT; i++) {
+                final RateLimiter limiter = rule.limiters[i];
+                if (limiter == null) {
+                    continue;
+                }
+                final long suppressed = all ? limiter.drainSuppressed() : limiter.roll(now);
+                final JBossLog target = limiter.getTarget();
+                if (suppressed > 0L && target != null) {
+                    target.suppressed(limiter, 1 << i, suppressed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the policies which apply to the log.
+     *
+     * @param name the name of the log
+     *
+     * @return the policy for the log
+     */
+    LogPolicy resolve(final String name) {
+        RateLimiter[] rateLimiters = null;
+        long[] sampleThresholds = null;
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            final int levelBit = 1 << i;
+            final RateLimitRule rateLimitRule = findRule(rateLimitRules, name, levelBit);
+            if (rateLimitRule != null) {
+                if (rateLimiters == null) {
+                    rateLimiters = new RateLimiter[LEVEL_COUNT];
+                }
+                rateLimiters[i] = rateLimitRule.limiters[i];
+            }
+            final SampleRule sampleRule = findRule(sampleRules, name, levelBit);
+            if (sampleRule != null) {
+                if (sampleThresholds == null) {
+                    sampleThresholds = new long[LEVEL_COUNT];
+                    Arrays.fill(sampleThresholds, LogPolicy.NOT_SAMPLED);
+                }
+                sampleThresholds[i] = sampleRule.threshold;
+            }
+        }
+        return new LogPolicy(this, rateLimiters, sampleThresholds);
+    }
+
+    /**
+     * Returns the index, from 0 for trace to 5 for fatal, of the {@link LogLevels} bit.
+     *
+     * @param levelBit the level bit
+     *
+     * @return the index of the level
+     */
+    static int levelIndex(final int levelBit) {
+        return Integer.numberOfTrailingZeros(levelBit);
+    }
+
+    private static <T extends Rule> T findRule(final List<T> rules, final String name, final int levelBit) {
+        for (T rule : rules) {
+            if ((rule.levels & levelBit) != 0 && matches(rule.prefix, name)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(final String prefix, final String name) {
+        if (ALL_LOGGERS.equals(prefix)) {
+            return true;
+        }
+        return name.startsWith(prefix) && (name.length() == prefix.length() || name.charAt(prefix.length()) == '.');
+    }
+
+    private static List<Rule> parseRules(final String value, final int defaultLevels, final String invalidMessage, final Logger logger) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<Rule> rules = new ArrayList<Rule>();
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            final Rule rule = parseRule(entry, defaultLevels);
+            if (rule == null) {
+                logger.warnf(invalidMessage, entry);
+            } else {
+                rules.add(rule);
+            }
+        }
+        Collections.sort(rules, RULE_ORDER);
+        return rules;
+    }
+
+    /**
+     * Parses a rule in the format {@code prefix[:level]=numerator/denominator}.
+     */
+    private static Rule parseRule(final String entry, final int defaultLevels) {
+        final int equals = entry.indexOf('=');
+        final int slash = entry.indexOf('/', equals + 1);
+        if (equals <= 0 || slash < 0) {
+            return null;
+        }
+        String prefix = entry.substring(0, equals).trim();
+        int levels = defaultLevels;
+        final int colon = prefix.lastIndexOf(':');
+        if (colon >= 0) {
+            levels = levelBit(prefix.substring(colon + 1).trim(), defaultLevels);
+            prefix = prefix.substring(0, colon).trim();
+        }
+        if (levels == 0 || prefix.isEmpty()) {
+            return null;
+        }
+        final long numerator;
+        final long denominator;
+        try {
+            numerator = Long.parseLong(entry.substring(equals + 1, slash).trim());
+            denominator = Long.parseLong(entry.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (numerator < 0L || denominator < 0L) {
+            return null;
+        }
+        return new Rule(entry, prefix, levels, numerator, denominator);
+    }
+
+    private static int levelBit(final String level, final int allLevels) {
+        final String name = level.toLowerCase(Locale.ENGLISH);
+        if ("trace".equals(name)) {
+            return LogLevels.TRACE;
+        } else if ("debug".equals(name)) {
+            return LogLevels.DEBUG;
+        } else if ("info".equals(name)) {
+            return LogLevels.INFO;
+        } else if ("warn".equals(name)) {
+            return LogLevels.WARN;
+        } else if ("error".equals(name)) {
+            return LogLevels.ERROR;
+        } else if ("fatal".equals(name)) {
+            return LogLevels.FATAL;
+        } else if ("*".equals(name)) {
+            return allLevels;
+        }
+        return 0;
+    }
+
+    private static class Rule {
+        final String entry;
+        final String prefix;
+        final int levels;
+        final long numerator;
+        final long denominator;
+
+        Rule(final String entry, final String prefix, final int levels, final long numerator, final long denominator) {
+            this.entry = entry;
+            this.prefix = prefix;
+            this.levels = levels;
+            this.numerator = numerator;
+            this.denominator = denominator;
+        }
+
+        Rule(final Rule rule) {
+            this(rule.entry, rule.prefix, rule.levels, rule.numerator, rule.denominator);
+        }
+    }
+
+    private static final class RateLimitRule extends Rule {
+        // Each level has its own limiter so a flood at one level does not suppress messages at another
+        final RateLimiter[] limiters = new RateLimiter[LEVEL_COUNT];
+        final long periodNanos;
+
+        RateLimitRule(final Rule rule, final long periodNanos) {
+            super(rule);
+            this.periodNanos = periodNanos;
+            for (int i = 0; i < LEVEL_COUNT; i++) {
+                if ((levels & (1 << i)) != 0) {
+                    limiters[i] = new RateLimiter(numerator, periodNanos);
+                }
+            }
+        }
+    }
+
+    private static final class SampleRule extends Rule {
+        // A message is sampled if a random 31 bit value is less than the threshold
+        final long threshold;
+
+        SampleRule(final Rule rule) {
+            super(rule);
+            threshold = (long) ((double) numerator / denominator * (1L << 31));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * The policies from a {@link LogPolicies} snapshot which apply to a single log.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LogPolicy {
+
+    /**
+     * The {@linkplain #sampleThreshold(int) sample threshold} of a level which is not sampled.
+     */
+    static final long NOT_SAMPLED = -1L;
+
+    private final LogPolicies source;
+    // Indexed by level, null if no rate limits apply to the log
+    private final RateLimiter[] rateLimiters;
+    // Indexed by level, null if no sample rates apply to the log
+    private final long[] sampleThresholds;
+
+    LogPolicy(final LogPolicies source, final RateLimiter[] rateLimiters, final long[] sampleThresholds) {
+        this.source = source;
+        this.rateLimiters = rateLimiters;
+        this.sampleThresholds = sampleThresholds;
+    }
+
+    /**
+     * Checks if this policy was resolved from the policies.
+     *
+     * @param policies the current policies
+     *
+     * @return {@code true} if this policy is current
+     */
+    boolean isResolvedFrom(final LogPolicies policies) {
+        return source == policies;
+    }
+
+    /**
+     * Returns the rate limiter for the level.
+     *
+     * @param levelBit the {@link LogLevels} bit of the level
+     *
+     * @return the rate limiter or {@code null} if the level is not rate limited
+     */
+    RateLimiter rateLimiter(final int levelBit) {
+        return rateLimiters == null ? null : rateLimiters[LogPolicies.levelIndex(levelBit)];
+    }
+
+    /**
+     * Returns the threshold a {@linkplain Sampler#next() random value} must be below for a message at the level to be
+     * sampled.
+     *
+     * @param levelBit the {@link LogLevels} bit of the level
+     *
+     * @return the threshold or {@link #NOT_SAMPLED} if all messages at the level are logged
+     */
+    long sampleThreshold(final int levelBit) {
+        return sampleThresholds == null ? NOT_SAMPLED : sampleThresholds[LogPolicies.levelIndex(levelBit)];
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The serialized form of {@link JBossLog} and {@link SimpleLog}.
+ * <p>
+ * A log is written as a one byte type tag and the name of the log. The name is replaced with its instance in a weak
+ * pool before it is written. As the stream writes a back reference for an object it has already written, each name is
+ * only written once in a stream however many logs, or copies of the name, share it.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LogProxy implements Externalizable {
+    private static final long serialVersionUID = -2437546853447457113L;
+
+    private static final byte JBOSS_LOG = 1;
+    private static final byte SIMPLE_LOG = 2;
+    // Equal names are written as the same instance
+    private static final NamePool NAMES = new NamePool();
+
+    private byte type;
+    private String name;
+    // Only written for a SimpleLog
+    private int level;
+
+    /**
+     * Required for deserialization.
+     */
+    public LogProxy() {
+    }
+
+    private LogProxy(final byte type, final String name, final int level) {
+        this.type = type;
+        this.name = NAMES.intern(name);
+        this.level = level;
+    }
+
+    /**
+     * Creates the serialized form of a {@link JBossLog}.
+     *
+     * @param name the name of the log
+     *
+     * @return the serialized form
+     */
+    static LogProxy jbossLog(final String name) {
+        return new LogProxy(JBOSS_LOG, name, 0);
+    }
+
+    /**
+     * Creates the serialized form of a {@link SimpleLog}.
+     *
+     * @param name  the name of the log
+     * @param level the current level of the log
+     *
+     * @return the serialized form
+     */
+    static LogProxy simpleLog(final String name, final int level) {
+        return new LogProxy(SIMPLE_LOG, name, level);
+    }
+
+    @Override
+    public void writeExternal(final ObjectOutput out) throws IOException {
+        out.writeByte(type);
+        // The pooled instance of the name, so the stream writes a reference for names already written
+        out.writeObject(name);
+        if (type == SIMPLE_LOG) {
+            out.writeInt(level);
+        }
+    }
+
+    @Override
+    public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+        type = in.readByte();
+        name = (String) in.readObject();
+        if (type == SIMPLE_LOG) {
+            level = in.readInt();
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        switch (type) {
+            case JBOSS_LOG:
+                // Uses the cache of the factory if enabled
+                return LogFactory.getFactory().getInstance(name);
+            case SIMPLE_LOG:
+                final SimpleLog log = new SimpleLog(name);
+                log.setLevel(level);
+                return log;
+            default:
+                throw new InvalidObjectException("Unknown log type " + type);
+        }
+    }
+}
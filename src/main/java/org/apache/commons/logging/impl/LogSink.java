@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A destination {@link SimpleLog} writes encoded records to instead of {@code System.err}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+interface LogSink {
+
+    /**
+     * The charset the records are to be encoded with.
+     *
+     * @return the charset
+     */
+    Charset charset();
+
+    /**
+     * Writes a record.
+     *
+     * @param record the encoded record, which is consumed
+     * @param error  {@code true} if the record is logged at the error level or above
+     */
+    void write(ByteBuffer record, boolean error);
+
+    /**
+     * Makes the records written so far visible to readers of the destination.
+     */
+    void flush();
+
+    /**
+     * Flushes and releases the destination. Records written afterwards are discarded.
+     */
+    void close();
+}
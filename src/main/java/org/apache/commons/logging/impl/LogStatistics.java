@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * The statistics of a {@link JBossLogFactory}. Each statistic is a {@linkplain StripedCounter striped counter} so
+ * updating them neither contends nor allocates.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LogStatistics implements LogStatisticsMXBean {
+    private final StripedCounter[] calls = new StripedCounter[6];
+    private final StripedCounter disabledCalls = new StripedCounter();
+    private final StripedCounter callsWithThrowable = new StripedCounter();
+    private final StripedCounter loggersCreated = new StripedCounter();
+    private final StripedCounter sampledCalls = new StripedCounter();
+    private final StripedCounter sampleDroppedCalls = new StripedCounter();
+
+    LogStatistics() {
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new StripedCounter();
+        }
+    }
+
+    /**
+     * Records a message.
+     *
+     * @param levelBit  the {@link LogLevels} bit of the level
+     * @param enabled   {@code true} if the level was enabled
+     * @param throwable {@code true} if the message has a cause
+     */
+    void called(final int levelBit, final boolean enabled, final boolean throwable) {
+        calls[LogPolicies.levelIndex(levelBit)].increment();
+        if (!enabled) {
+            disabledCalls.increment();
+        }
+        if (throwable) {
+            callsWithThrowable.increment();
+        }
+    }
+
+    /**
+     * Records the creation of a logger.
+     */
+    void loggerCreated() {
+        loggersCreated.increment();
+    }
+
+    /**
+     * Records a sampling decision.
+     *
+     * @param sampled {@code true} if the message is logged, {@code false} if it was dropped
+     */
+    void sampled(final boolean sampled) {
+        if (sampled) {
+            sampledCalls.increment();
+        } else {
+            sampleDroppedCalls.increment();
+        }
+    }
+
+    @Override
+    public long getTraceCalls() {
+        return calls[LogPolicies.levelIndex(LogLevels.TRACE)].sum();
+    }
+
+    @Override
+    public long getDebugCalls() {
+        return calls[LogPolicies.levelIndex(LogLevels.DEBUG)].sum();
+    }
+
+    @Override
+    public long getInfoCalls() {
+        return calls[LogPolicies.levelIndex(LogLevels.INFO)].sum();
+    }
+
+    @Override
+    public long getWarnCalls() {
+        return calls[LogPolicies.levelIndex(LogLevels.WARN)].sum();
+    }
+
+    @Override
+    public long getErrorCalls() {
+        return calls[LogPolicies.levelIndex(LogLevels.ERROR)].sum();
+    }
+
+    @Override
+    public long getFatalCalls() {
+        return calls[LogPolicies.levelIndex(LogLevels.FATAL)].sum();
+    }
+
+    @Override
+    public long getDisabledCalls() {
+        return disabledCalls.sum();
+    }
+
+    @Override
+    public long getCallsWithThrowable() {
+        return callsWithThrowable.sum();
+    }
+
+    @Override
+    public long getLoggersCreated() {
+        return loggersCreated.sum();
+    }
+
+    @Override
+    public long getSampledCalls() {
+        return sampledCalls.sum();
+    }
+
+    @Override
+    public long getSampleDroppedCalls() {
+        return sampleDroppedCalls.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (StripedCounter counter : calls) {
+            counter.sumThenReset();
+        }
+        disabledCalls.sumThenReset();
+        callsWithThrowable.sumThenReset();
+        loggersCreated.sumThenReset();
+        sampledCalls.sumThenReset();
+        sampleDroppedCalls.sumThenReset();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * The statistics of the messages logged through the commons-logging bridge. The statistics are only collected while
+ * the {@linkplain JBossLogFactory#STATISTICS_PROPERTY statistics property} is enabled, apart from the
+ * {@linkplain #getLoggersCreated() number of loggers created}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public interface LogStatisticsMXBean {
+
+    /**
+     * The name the statistics are registered with on the platform MBean server.
+     */
+    String OBJECT_NAME = "org.apache.commons.logging:type=JBossLogFactory";
+
+    /**
+     * Returns the number of trace messages, including messages which were not logged as trace was disabled.
+     *
+     * @return the number of trace messages
+     */
+    long getTraceCalls();
+
+    /**
+     * Returns the number of debug messages, including messages which were not logged as debug was disabled.
+     *
+     * @return the number of debug messages
+     */
+    long getDebugCalls();
+
+    /**
+     * Returns the number of info messages, including messages which were not logged as info was disabled.
+     *
+     * @return the number of info messages
+     */
+    long getInfoCalls();
+
+    /**
+     * Returns the number of warn messages, including messages which were not logged as warn was disabled.
+     *
+     * @return the number of warn messages
+     */
+    long getWarnCalls();
+
+    /**
+     * Returns the number of error messages, including messages which were not logged as error was disabled.
+     *
+     * @return the number of error messages
+     */
+    long getErrorCalls();
+
+    /**
+     * Returns the number of fatal messages, including messages which were not logged as fatal was disabled.
+     *
+     * @return the number of fatal messages
+     */
+    long getFatalCalls();
+
+    /**
+     * Returns the number of messages logged when the level was disabled. A high number indicates messages which are
+     * built without first checking if the level is enabled. Messages below the
+     * {@linkplain JBossLogFactory#MINIMUM_LEVEL_PROPERTY JVM wide minimum level} are not counted.
+     *
+     * @return the number of messages logged when the level was disabled
+     */
+    long getDisabledCalls();
+
+    /**
+     * Returns the number of messages logged with a cause.
+     *
+     * @return the number of messages with a cause
+     */
+    long getCallsWithThrowable();
+
+    /**
+     * Returns the number of loggers created.
+     *
+     * @return the number of loggers created
+     */
+    long getLoggersCreated();
+
+    /**
+     * Returns the number of sampling decisions which allowed a message to be logged.
+     *
+     * @return the number of sampled messages
+     *
+     * @see JBossLogFactory#SAMPLE_RATE_PROPERTY
+     */
+    long getSampledCalls();
+
+    /**
+     * Returns the number of sampling decisions which dropped a message.
+     *
+     * @return the number of messages dropped by sampling
+     *
+     * @see JBossLogFactory#SAMPLE_RATE_PROPERTY
+     */
+    long getSampleDroppedCalls();
+
+    /**
+     * Resets all the statistics to zero.
+     */
+    void reset();
+}
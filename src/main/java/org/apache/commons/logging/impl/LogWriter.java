@@ -0,0 +1,311 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes encoded log records to a {@link FileChannel} through a buffer.
+ * <p>
+ * Records are appended to a direct buffer, which only takes a short lock, and written to the channel when the
+ * {@linkplain Policy flush policy} requires it. Writing is a group write. The thread which writes takes whatever all
+ * threads have appended since the last write, and swaps in a second buffer so appending continues while the channel
+ * is written. A thread waiting to write which finds its record was written by another thread returns straight away,
+ * so under contention many records are written with a single call.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LogWriter implements LogSink {
+
+    /**
+     * When buffered records are written to the channel.
+     */
+    static final class Policy {
+        /**
+         * Writes each record as it is logged.
+         */
+        static final Policy IMMEDIATE = new Policy(true, 0, false, 0L);
+
+        final boolean immediate;
+        final int records;
+        final boolean error;
+        final long intervalMillis;
+
+        private Policy(final boolean immediate, final int records, final boolean error, final long intervalMillis) {
+            this.immediate = immediate;
+            this.records = records;
+            this.error = error;
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * Parses a flush policy. The value is a comma separated list of {@code immediate}, {@code records:N} to write
+         * once N records are buffered, {@code interval:MILLIS} to write at an interval and {@code error} to write as
+         * soon as an error is logged. Invalid entries are ignored. Records are always written once the buffer is full.
+         *
+         * @param value the value to parse, may be {@code null}
+         *
+         * @return the policy, {@link #IMMEDIATE} if the value does not configure one
+         */
+        static Policy parse(final String value) {
+            if (value == null) {
+                return IMMEDIATE;
+            }
+            boolean immediate = false;
+            int records = 0;
+            boolean error = false;
+            long intervalMillis = 0L;
+            for (String entry : value.split(",")) {
+                final String trimmed = entry.trim();
+                try {
+                    if ("immediate".equalsIgnoreCase(trimmed)) {
+                        immediate = true;
+                    } else if ("error".equalsIgnoreCase(trimmed)) {
+                        error = true;
+                    } else if (trimmed.regionMatches(true, 0, "records:", 0, 8)) {
+                        records = Math.max(0, Integer.parseInt(trimmed.substring(8).trim()));
+                    } else if (trimmed.regionMatches(true, 0, "interval:", 0, 9)) {
+                        intervalMillis = Math.max(0L, Long.parseLong(trimmed.substring(9).trim()));
+                    }
+                } catch (NumberFormatException ignore) {
+                    // Ignore the entry
+                }
+            }
+            if (!immediate && records == 0 && !error && intervalMillis == 0L) {
+                return IMMEDIATE;
+            }
+            return new Policy(immediate, records, error, intervalMillis);
+        }
+    }
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final Policy policy;
+    private final boolean closeChannel;
+    private final int capacity;
+    private final Thread ticker;
+    private final Thread shutdownHook;
+    // Taken for appending and for swapping the buffers
+    private final Object appendLock = new Object();
+    // Taken for writing to the channel, before the append lock if both are required
+    private final Object writeLock = new Object();
+    // Guarded by the appendLock
+    private ByteBuffer active;
+    // The buffer being written, guarded by the writeLock
+    private ByteBuffer standby;
+    // The number of records appended, guarded by the appendLock
+    private long appended;
+    // The number of records appended since the last write, guarded by the appendLock
+    private int pending;
+    // The number of records written, guarded by the writeLock
+    private long written;
+    private volatile boolean closed;
+    private boolean failed;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param name         the name of the threads the writer creates
+     * @param channel      the channel to write to
+     * @param closeChannel {@code true} if the channel is closed with the writer
+     * @param charset      the charset the records are to be encoded with
+     * @param bufferSize   the size of each of the two buffers
+     * @param policy       the flush policy
+     */
+    LogWriter(final String name, final FileChannel channel, final boolean closeChannel, final Charset charset, final int bufferSize, final Policy policy) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.charset = charset;
+        this.policy = policy;
+        capacity = bufferSize;
+        active = ByteBuffer.allocateDirect(bufferSize);
+        standby = ByteBuffer.allocateDirect(bufferSize);
+        if (policy.intervalMillis > 0L) {
+            ticker = AsyncDispatcher.createThread(name + "-flush", new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            });
+            ticker.start();
+        } else {
+            ticker = null;
+        }
+        // Buffered records must not be lost when the JVM exits
+        shutdownHook = AsyncDispatcher.createThread(name + "-shutdown", new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+        try {
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } catch (SecurityException ignore) {
+        } catch (IllegalStateException ignore) {
+            // Shutdown is in progress
+        }
+    }
+
+    @Override
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The record is written to the channel before returning if the flush policy requires it, otherwise it is
+     * buffered.
+     * </p>
+     */
+    @Override
+    public void write(final ByteBuffer record, final boolean error) {
+        if (closed) {
+            return;
+        }
+        final long sequence;
+        final boolean flush;
+        while (true) {
+            synchronized (appendLock) {
+                if (closed) {
+                    // The final flush only writes what was appended before the writer was closed
+                    return;
+                }
+                if (record.remaining() <= active.remaining()) {
+                    active.put(record);
+                    sequence = ++appended;
+                    pending++;
+                    flush = policy.immediate || (error && policy.error) || (policy.records > 0 && pending >= policy.records);
+                    break;
+                }
+            }
+            if (record.remaining() > capacity) {
+                writeLarge(record);
+                return;
+            }
+            // Make room for the record
+            flush(Long.MAX_VALUE);
+        }
+        if (flush) {
+            flush(sequence);
+        }
+    }
+
+    @Override
+    public void flush() {
+        flush(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            // Rejects new records before the final flush so none is appended once the buffers have been written
+            closed = true;
+        }
+        flush();
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (SecurityException ignore) {
+        } catch (IllegalStateException ignore) {
+            // Shutdown is in progress
+        }
+        if (closeChannel) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records unless the record with the sequence has already been written.
+     */
+    private void flush(final long sequence) {
+        synchronized (writeLock) {
+            if (written >= sequence) {
+                // Written with the records of another thread
+                return;
+            }
+            final ByteBuffer full;
+            final long last;
+            synchronized (appendLock) {
+                if (appended == written) {
+                    return;
+                }
+                full = active;
+                active = standby;
+                standby = full;
+                last = appended;
+                pending = 0;
+            }
+            full.flip();
+            writeFully(full);
+            full.clear();
+            written = last;
+        }
+    }
+
+    private void writeLarge(final ByteBuffer record) {
+        synchronized (writeLock) {
+            if (closed) {
+                // The final flush may have been written and the channel closed
+                return;
+            }
+            // Keep the records in order
+            flush();
+            writeFully(record);
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            if (!failed) {
+                // Only report the first failure rather than once per record
+                failed = true;
+                System.err.println("Failed to write log records: " + e);
+            }
+        }
+    }
+
+    private void tick() {
+        while (!closed) {
+            try {
+                Thread.sleep(policy.intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+}
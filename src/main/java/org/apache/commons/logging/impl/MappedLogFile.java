@@ -0,0 +1,850 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends records to a file through a memory mapped region, so writing a record is a copy into memory and a bump of
+ * the write position.
+ * <p>
+ * The file is mapped one region at a time. Mapping a region extends the file to the end of the region, so the file
+ * ends in zero bytes which have not been written yet. The unused tail is truncated when the file is closed or rolled,
+ * and if the process ends without closing the file, it is truncated when the file is next opened by scanning back to
+ * the last byte which is not zero. Only {@linkplain #isSupported(Charset) charsets} which never encode a character
+ * other than NUL as a zero byte can be used, so the last record is never mistaken for the unused tail.
+ * </p>
+ * <p>
+ * A mapping is released straight away when the JDK offers a way to do so, otherwise once the buffer is collected. On
+ * platforms which cannot truncate a file which is still mapped the unused tail is then left in place until the file is
+ * next opened.
+ * </p>
+ * <p>
+ * The file is rolled once it would grow beyond the maximum size or once the roll interval has passed. Rolling only
+ * swaps the current file for the next file, which a low priority background thread has already opened and mapped as
+ * {@code name.next}. The background thread then truncates the rolled file, renames it with the time it was rolled
+ * appended to its name, renames the next file to the name of the file, optionally compresses the rolled file, removes
+ * the rolled files which are no longer retained and prepares the next file. If the next file is not ready when the
+ * file is to be rolled, records are written to the current file until it is. If renaming fails, for example as
+ * another process holds the file open, the current file is still the next file, so the renames are retried before the
+ * next file is prepared again.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class MappedLogFile implements LogSink, RotationStatisticsMXBean {
+    private static final int SCAN_BUFFER_SIZE = 8192;
+    private static final int COPY_BUFFER_SIZE = 8192;
+    private static final String NEXT_SUFFIX = ".next";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String ROLLED_DATE_FORMAT = "yyyyMMdd'T'HHmmss.SSS";
+    // Matches the suffixes appended to rolled files, so only files which were rolled are removed
+    private static final Pattern ROLLED_SUFFIX = Pattern.compile("\\d{8}T\\d{6}\\.\\d{3}(-\\d+)?(\\.gz)?");
+    // How long the background thread waits before trying to prepare the next file again after a failure
+    private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(1L);
+    // Queued to stop the background thread
+    private static final Segment END = new Segment(null, null);
+    // Releases a mapping straight away, null if the JDK offers no way to do so
+    private static final Unmapper UNMAPPER = Unmapper.create();
+
+    private final File file;
+    private final File nextFile;
+    private final Charset charset;
+    private final int regionSize;
+    private final long maxFileSize;
+    private final long rollIntervalMillis;
+    private final boolean compress;
+    private final int maxRolledFiles;
+    private final Thread shutdownHook;
+    // The background thread which rotates the file, null if the file is not rolled
+    private final Thread roller;
+    // The rolled segments waiting for the background thread
+    private final BlockingQueue<Segment> retired = new LinkedBlockingQueue<Segment>();
+    // Guards everything below, held only to copy a record unless a region is mapped or the segments are swapped
+    private final Object lock = new Object();
+    private Segment active;
+    // The segment which replaces the active segment when it is rolled, null while being prepared
+    private Segment standby;
+    // The number of rolled segments the background thread has not finished with
+    private int pending;
+    private boolean deferred;
+    private boolean closed;
+    private boolean failed;
+    private boolean rollFailed;
+
+    // Only accessed by the background thread. The name the rolled file is renamed to while its renames are retried, and
+    // whether the rolled file has been renamed, after which only the next file remains to be renamed.
+    private File unrenamed;
+    private boolean rolledRenamed;
+
+    // Only written by the background thread, or while holding the lock for the deferred rotations
+    private volatile long rotationCount;
+    private volatile long deferredRotationCount;
+    private volatile long lastRotationNanos;
+    private volatile long totalRotationNanos;
+    private volatile long uncompressedBytes;
+    private volatile long compressedBytes;
+    private volatile long removedFileCount;
+
+    private MappedLogFile(final File file, final Charset charset, final int regionSize, final long maxFileSize, final long rollIntervalMillis,
+                          final boolean compress, final int maxRolledFiles) {
+        this.file = file;
+        nextFile = new File(file.getPath() + NEXT_SUFFIX);
+        this.charset = charset;
+        this.regionSize = regionSize;
+        this.maxFileSize = maxFileSize;
+        this.rollIntervalMillis = rollIntervalMillis;
+        this.compress = compress;
+        this.maxRolledFiles = maxRolledFiles;
+        shutdownHook = AsyncDispatcher.createThread("SimpleLog-mapped-shutdown", new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+        if (maxFileSize > 0L || rollIntervalMillis > 0L) {
+            roller = AsyncDispatcher.createThread("SimpleLog-roller", new Runnable() {
+                @Override
+                public void run() {
+                    rotate();
+                }
+            });
+            // Rotating, and in particular compressing, must not take the CPU from the threads logging
+            roller.setPriority(Thread.MIN_PRIORITY);
+        } else {
+            roller = null;
+        }
+    }
+
+    /**
+     * Opens the file, truncating any unused tail left by a previous process, and maps the first region.
+     *
+     * @param file               the file to append to
+     * @param charset            the charset the records are to be encoded with
+     * @param regionSize         the number of bytes mapped at a time
+     * @param maxFileSize        the size in bytes the file is rolled at, 0 to not roll by size
+     * @param rollIntervalMillis the interval in milliseconds the file is rolled at, 0 to not roll by time
+     * @param compress           {@code true} to compress the rolled files with gzip
+     * @param maxRolledFiles     the number of rolled files retained, 0 to retain all of them
+     *
+     * @return the opened file
+     *
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if the charset is not {@linkplain #isSupported(Charset) supported}
+     */
+    static MappedLogFile open(final File file, final Charset charset, final int regionSize, final long maxFileSize, final long rollIntervalMillis,
+                              final boolean compress, final int maxRolledFiles) throws IOException {
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException("Records encoded with " + charset + " cannot be told apart from the unused tail of the file");
+        }
+        final MappedLogFile result = new MappedLogFile(file, charset, regionSize, maxFileSize, rollIntervalMillis, compress, maxRolledFiles);
+        synchronized (result.lock) {
+            result.recover();
+            result.active = Segment.open(file, regionSize);
+            if (result.roller != null) {
+                // Prepare the first next file here so the first roll does not depend on the background thread
+                result.standby = Segment.open(result.nextFile, regionSize);
+            }
+        }
+        if (result.roller != null) {
+            result.roller.start();
+        }
+        try {
+            Runtime.getRuntime().addShutdownHook(result.shutdownHook);
+        } catch (SecurityException ignore) {
+        } catch (IllegalStateException ignore) {
+            // Shutdown is in progress
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the records can be encoded with the charset. The end of the file is found by scanning back to the last
+     * byte which is not zero, so the charset must not encode any character other than NUL with a zero byte, which
+     * rules out UTF-16 and UTF-32.
+     *
+     * @param charset the charset to check
+     *
+     * @return {@code true} if the charset can be used
+     */
+    static boolean isSupported(final Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // Every character of the basic multilingual plane other than NUL and the surrogates
+        final CharBuffer chars = CharBuffer.allocate(Character.MAX_VALUE - (Character.MAX_SURROGATE - Character.MIN_SURROGATE + 1));
+        for (int c = 1; c <= Character.MAX_VALUE; c++) {
+            if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                chars.put((char) c);
+            }
+        }
+        chars.flip();
+        final ByteBuffer bytes;
+        try {
+            bytes = encoder.encode(chars);
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+        while (bytes.hasRemaining()) {
+            if (bytes.get() == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the shutdown hook which closes the file. Used when the records are written from a queue, which then
+     * closes the file once it has been drained on shutdown, as closing the file first would drop the queued records.
+     */
+    void removeShutdownHook() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (SecurityException ignore) {
+        } catch (IllegalStateException ignore) {
+            // Shutdown is in progress
+        }
+    }
+
+    /**
+     * Indicates whether the file is rolled by size or time.
+     *
+     * @return {@code true} if the file is rolled
+     */
+    boolean isRolled() {
+        return roller != null;
+    }
+
+    @Override
+    public Charset charset() {
+        return charset;
+    }
+
+    @Override
+    public void write(final ByteBuffer record, final boolean error) {
+        synchronized (lock) {
+            if (closed || failed) {
+                return;
+            }
+            try {
+                if (roller != null && active.length > 0L && isRollRequired(record.remaining())) {
+                    swap();
+                }
+                active.write(record, regionSize);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Nothing to do as the written records are visible to readers of the file as soon as they are copied.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                active.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        if (roller != null) {
+            // Let the background thread finish the rotation in progress, it then discards the next file
+            retired.offer(END);
+            if (Thread.currentThread() != roller) {
+                try {
+                    roller.join(AsyncDispatcher.CLOSE_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            removeShutdownHook();
+        }
+    }
+
+    /**
+     * Waits for the background thread to finish the rotations in progress and prepare the next file.
+     *
+     * @param timeoutMillis how long to wait in milliseconds
+     *
+     * @return {@code true} if the background thread is idle, {@code false} if the timeout elapsed
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitRotation(final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (roller != null && !closed && (pending > 0 || standby == null)) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    @Override
+    public long getDeferredRotationCount() {
+        return deferredRotationCount;
+    }
+
+    @Override
+    public long getLastRotationTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastRotationNanos);
+    }
+
+    @Override
+    public long getTotalRotationTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalRotationNanos);
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    @Override
+    public long getRemovedFileCount() {
+        return removedFileCount;
+    }
+
+    private boolean isRollRequired(final int recordLength) {
+        return (maxFileSize > 0L && active.length + recordLength > maxFileSize)
+                || (rollIntervalMillis > 0L && System.currentTimeMillis() - active.started >= rollIntervalMillis);
+    }
+
+    /**
+     * Replaces the active segment with the standby segment and hands the active segment to the background thread.
+     * Must be called while holding the lock.
+     */
+    private void swap() {
+        final Segment next = standby;
+        if (next == null) {
+            // The background thread is still preparing the next file, keep writing to this one rather than wait
+            if (!deferred) {
+                deferred = true;
+                deferredRotationCount++;
+            }
+            return;
+        }
+        deferred = false;
+        standby = null;
+        final long now = System.currentTimeMillis();
+        active.rolled = now;
+        next.started = now;
+        pending++;
+        retired.offer(active);
+        active = next;
+    }
+
+    /**
+     * Run by the background thread.
+     */
+    private void rotate() {
+        while (true) {
+            final Segment segment;
+            try {
+                segment = prepareStandby() ? retired.take() : retired.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (segment == END) {
+                discardStandby();
+                return;
+            }
+            if (segment != null) {
+                final long start = System.nanoTime();
+                try {
+                    roll(segment);
+                } catch (IOException e) {
+                    rollFailed(e);
+                }
+                final long duration = System.nanoTime() - start;
+                lastRotationNanos = duration;
+                totalRotationNanos += duration;
+                rotationCount++;
+                synchronized (lock) {
+                    pending--;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the next file if there is no standby segment, after retrying the renames of the last rolled file if they
+     * failed.
+     *
+     * @return {@code false} if renaming the rolled file or opening the next file failed
+     */
+    private boolean prepareStandby() {
+        synchronized (lock) {
+            // The next file is still the active segment until the pending rotation renames it
+            if (standby != null || pending > 0 || closed) {
+                return true;
+            }
+        }
+        final Segment segment;
+        try {
+            if (unrenamed != null) {
+                // Opening the next file would truncate the file the active segment has mapped
+                rename();
+            }
+            segment = Segment.open(nextFile, regionSize);
+        } catch (IOException e) {
+            rollFailed(e);
+            return false;
+        }
+        synchronized (lock) {
+            if (!closed) {
+                standby = segment;
+                lock.notifyAll();
+                return true;
+            }
+        }
+        discard(segment);
+        return true;
+    }
+
+    private void discardStandby() {
+        final Segment segment;
+        synchronized (lock) {
+            segment = standby;
+            standby = null;
+        }
+        if (segment != null) {
+            discard(segment);
+        }
+    }
+
+    private void discard(final Segment segment) {
+        try {
+            segment.close();
+        } catch (IOException ignore) {
+        }
+        if (!nextFile.delete()) {
+            // Removed when the file is next opened
+            nextFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * Truncates, renames, compresses and prunes a rolled segment. Run by the background thread.
+     */
+    private void roll(final Segment segment) throws IOException {
+        segment.close();
+        unrenamed = rolledFile(segment.rolled);
+        rolledRenamed = false;
+        rename();
+    }
+
+    /**
+     * Renames the rolled file and then the next file to the name of the file, then compresses and prunes the rolled
+     * file. If a rename fails it is retried by the next call, a rename which succeeded is not repeated.
+     */
+    private void rename() throws IOException {
+        final File rolled = unrenamed;
+        if (!rolledRenamed) {
+            if (!file.renameTo(rolled)) {
+                throw new IOException("Could not rename " + file + " to " + rolled);
+            }
+            rolledRenamed = true;
+        }
+        // The active segment was opened as the next file
+        if (!nextFile.renameTo(file)) {
+            throw new IOException("Could not rename " + nextFile + " to " + file);
+        }
+        unrenamed = null;
+        if (compress) {
+            compress(rolled);
+        }
+        if (maxRolledFiles > 0) {
+            prune();
+        }
+    }
+
+    private void compress(final File rolled) throws IOException {
+        final File compressed = new File(rolled.getPath() + COMPRESSED_SUFFIX);
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long read = 0L;
+        boolean complete = false;
+        final InputStream in = new FileInputStream(rolled);
+        try {
+            final OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed), COPY_BUFFER_SIZE);
+            try {
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, count);
+                    read += count;
+                }
+                complete = true;
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+            if (!complete) {
+                compressed.delete();
+            }
+        }
+        uncompressedBytes += read;
+        compressedBytes += compressed.length();
+        if (!rolled.delete()) {
+            throw new IOException("Could not remove " + rolled + " once compressed");
+        }
+    }
+
+    /**
+     * Removes the oldest rolled files so no more than the maximum number are retained.
+     */
+    private void prune() {
+        final File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        final String prefix = file.getName() + ".";
+        final List<File> rolled = new ArrayList<File>();
+        for (File candidate : files) {
+            final String name = candidate.getName();
+            if (name.startsWith(prefix) && ROLLED_SUFFIX.matcher(name.substring(prefix.length())).matches()) {
+                rolled.add(candidate);
+            }
+        }
+        if (rolled.size() <= maxRolledFiles) {
+            return;
+        }
+        // Oldest first, a rolled file is last modified when the file is rolled
+        Collections.sort(rolled, new Comparator<File>() {
+            @Override
+            public int compare(final File o1, final File o2) {
+                final long m1 = o1.lastModified();
+                final long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : m1 > m2 ? 1 : o1.getName().compareTo(o2.getName());
+            }
+        });
+        for (int i = 0, count = rolled.size() - maxRolledFiles; i < count; i++) {
+            if (rolled.get(i).delete()) {
+                removedFileCount++;
+            }
+        }
+    }
+
+    private File rolledFile(final long rolledMillis) {
+        final String suffix = new SimpleDateFormat(ROLLED_DATE_FORMAT).format(new Date(rolledMillis));
+        File rolled = new File(file.getPath() + "." + suffix);
+        for (int i = 1; rolled.exists() || new File(rolled.getPath() + COMPRESSED_SUFFIX).exists(); i++) {
+            rolled = new File(file.getPath() + "." + suffix + "-" + i);
+        }
+        return rolled;
+    }
+
+    /**
+     * Recovers from a process which ended without closing the file. If the process ended after swapping to the next
+     * file but before renaming it, the file is rolled and the next file takes its place.
+     */
+    private void recover() throws IOException {
+        if (!nextFile.exists()) {
+            return;
+        }
+        if (truncate(nextFile) == 0L) {
+            if (!nextFile.delete()) {
+                throw new IOException("Could not remove " + nextFile);
+            }
+            return;
+        }
+        if (file.exists() && truncate(file) > 0L) {
+            final File rolled = rolledFile(file.lastModified());
+            if (!file.renameTo(rolled)) {
+                throw new IOException("Could not rename " + file + " to " + rolled);
+            }
+        } else {
+            file.delete();
+        }
+        if (!nextFile.renameTo(file)) {
+            throw new IOException("Could not rename " + nextFile + " to " + file);
+        }
+    }
+
+    private void fail(final IOException e) {
+        if (!failed) {
+            // Only report the first failure rather than once per record
+            failed = true;
+            System.err.println("Failed to write log records to " + file + ": " + e);
+        }
+    }
+
+    private void rollFailed(final IOException e) {
+        // Records are still written to the current file, only report the first failure
+        if (!rollFailed) {
+            rollFailed = true;
+            System.err.println("Failed to roll the log file " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Truncates the unused tail of a file which is not open.
+     *
+     * @return the length of the file
+     */
+    private static long truncate(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            final long length = findEnd(raf.getChannel());
+            raf.getChannel().truncate(length);
+            return length;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the position after the last byte which is not zero.
+     */
+    private static long findEnd(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long end = channel.size();
+        while (end > 0L) {
+            final long start = Math.max(0L, end - SCAN_BUFFER_SIZE);
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) != 0) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0L;
+    }
+
+    /**
+     * Releases the mapping straight away rather than when the buffer is collected, which is required before the file
+     * can be truncated on some platforms.
+     *
+     * @return {@code true} if the mapping was released, {@code false} if it is released once the buffer is collected
+     */
+    private static boolean unmap(final MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return true;
+        }
+        return UNMAPPER != null && UNMAPPER.unmap(buffer);
+    }
+
+    /**
+     * Releases a mapping through whichever method the JDK offers. None of these methods are part of the Java API, so
+     * each is looked up once and any failure only means the mapping is released once the buffer is collected.
+     */
+    private static final class Unmapper {
+        // The instance the method is invoked on, null if the method is invoked on the cleaner of the buffer
+        private final Object target;
+        private final Method method;
+        private final Method clean;
+
+        private Unmapper(final Object target, final Method method, final Method clean) {
+            this.target = target;
+            this.method = method;
+            this.clean = clean;
+        }
+
+        static Unmapper create() {
+            return AccessController.doPrivileged(new PrivilegedAction<Unmapper>() {
+                @Override
+                public Unmapper run() {
+                    try {
+                        // Java 9 and later
+                        final Class<?> unsafeType = Class.forName("sun.misc.Unsafe");
+                        final Method invokeCleaner = unsafeType.getMethod("invokeCleaner", ByteBuffer.class);
+                        final Field theUnsafe = unsafeType.getDeclaredField("theUnsafe");
+                        theUnsafe.setAccessible(true);
+                        return new Unmapper(theUnsafe.get(null), invokeCleaner, null);
+                    } catch (Exception ignore) {
+                    } catch (LinkageError ignore) {
+                    }
+                    try {
+                        // Java 8
+                        final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                        final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                        return new Unmapper(null, cleaner, clean);
+                    } catch (Exception ignore) {
+                    } catch (LinkageError ignore) {
+                    }
+                    return null;
+                }
+            });
+        }
+
+        boolean unmap(final MappedByteBuffer buffer) {
+            try {
+                if (clean == null) {
+                    method.invoke(target, buffer);
+                } else {
+                    final Object cleaner = method.invoke(buffer);
+                    if (cleaner == null) {
+                        return false;
+                    }
+                    clean.invoke(cleaner);
+                }
+                return true;
+            } catch (Exception ignore) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * An open file and its mapped region. Accessed while holding the lock, or by the background thread once rolled.
+     */
+    private static final class Segment {
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private MappedByteBuffer region;
+        // The number of bytes written to the file
+        private long length;
+        // The time the segment became active and the time it was rolled
+        private long started;
+        private long rolled;
+
+        private Segment(final RandomAccessFile raf, final FileChannel channel) {
+            this.raf = raf;
+            this.channel = channel;
+        }
+
+        /**
+         * Opens the file and maps the region after the last record.
+         */
+        static Segment open(final File file, final int regionSize) throws IOException {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                final Segment segment = new Segment(raf, raf.getChannel());
+                segment.length = findEnd(segment.channel);
+                // Remove the unused tail of a file which was not closed
+                segment.channel.truncate(segment.length);
+                segment.region = segment.map(regionSize);
+                segment.started = System.currentTimeMillis();
+                return segment;
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        void write(final ByteBuffer record, final int regionSize) throws IOException {
+            while (record.hasRemaining()) {
+                if (!region.hasRemaining()) {
+                    region = map(regionSize);
+                }
+                final int limit = record.limit();
+                record.limit(record.position() + Math.min(record.remaining(), region.remaining()));
+                final int count = record.remaining();
+                region.put(record);
+                record.limit(limit);
+                length += count;
+            }
+        }
+
+        /**
+         * Unmaps the region, truncates the unused tail and closes the file.
+         */
+        void close() throws IOException {
+            final MappedByteBuffer current = region;
+            region = null;
+            final boolean unmapped = unmap(current);
+            try {
+                channel.truncate(length);
+            } catch (IOException e) {
+                // The platform may not truncate a file which is still mapped, the tail is then removed when next opened
+                if (unmapped) {
+                    throw e;
+                }
+            } finally {
+                raf.close();
+            }
+        }
+
+        private MappedByteBuffer map(final int regionSize) throws IOException {
+            final MappedByteBuffer previous = region;
+            final MappedByteBuffer result = channel.map(FileChannel.MapMode.READ_WRITE, length, regionSize);
+            if (previous != null) {
+                unmap(previous);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Suppresses repeated messages within a window.
+ * <p>
+ * A message is identified by the name of the log, the level, the message text and, if present, the type of the cause
+ * and the top frames of its stack trace. As {@link Throwable#getStackTrace()} copies every frame the frames are only
+ * compared when a message matches an entry on everything else and its cause is not the instance the entry was created
+ * with, and the frames of the entry are captured once on the first such comparison. The first occurrence of a message
+ * is logged and further occurrences within the window are counted. Once the window ends a {@linkplain #repeated(Object, int, String, long) record} with the number
+ * of repeats is logged, either by the first occurrence after the window, by the eviction of the message from the
+ * table or, if the message is not logged again, by a daemon thread which sweeps the table once per window.
+ * </p>
+ * <p>
+ * The table is direct mapped and has a fixed size, a message which hashes to an occupied slot evicts the message in the
+ * slot. This keeps the memory used bounded regardless of the number of distinct messages.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+abstract class MessageCoalescer {
+    private static final int TABLE_SIZE = 256;
+    private static final int FRAME_COUNT = 4;
+    // The repeat count of an entry which has been replaced
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<Entry>(TABLE_SIZE);
+    private final long windowNanos;
+    // The thread sweeping the table, null once closed
+    private volatile Thread sweeper;
+
+    /**
+     * Creates a new coalescer.
+     *
+     * @param windowNanos the length of the window in nanoseconds
+     */
+    MessageCoalescer(final long windowNanos) {
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Invoked when a message which was repeated leaves the table.
+     *
+     * @param target  the target the message was logged to
+     * @param level   the level of the message
+     * @param message the message
+     * @param count   the number of times the message was repeated after it was logged
+     */
+    abstract void repeated(Object target, int level, String message, long count);
+
+    /**
+     * Starts the daemon thread which reports the repeats of messages whose window has ended.
+     *
+     * @param name the name of the thread
+     */
+    void start(final String name) {
+        final Thread thread = AsyncDispatcher.createThread(name, new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        });
+        sweeper = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the sweeping thread and reports the repeats of all the messages in the table, whether or not their window
+     * has ended.
+     */
+    void close() {
+        final Thread thread = sweeper;
+        sweeper = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        expire(0L, true);
+    }
+
+    /**
+     * Checks if a message should be logged.
+     *
+     * @param target  the target the message is logged to, passed to {@link #repeated(Object, int, String, long)}
+     * @param name    the name of the log
+     * @param level   the level of the message
+     * @param message the message
+     * @param thrown  the cause, may be {@code null}
+     * @param now     the current {@link System#nanoTime() time}
+     *
+     * @return {@code true} if the message should be logged, {@code false} if it is a repeat
+     */
+    boolean accept(final Object target, final String name, final int level, final Object message, final Throwable thrown, final long now) {
+        final String text = String.valueOf(message);
+        final String thrownType = thrown == null ? null : thrown.getClass().getName();
+        final int hash = hash(name, level, text, thrownType);
+        final int index = hash & (TABLE_SIZE - 1);
+        // The frames of the cause, only copied if needed to compare with an entry
+        StackTraceElement[] frames = null;
+        while (true) {
+            final Entry entry = entries.get(index);
+            if (entry != null && entry.matches(hash, name, level, text, thrownType)) {
+                if (thrown != null && thrown != entry.thrown && frames == null) {
+                    frames = thrown.getStackTrace();
+                }
+                if (now - entry.start < windowNanos && (frames == null || entry.matchesFrames(frames))) {
+                    if (entry.repeats.incrementAndGet() > 0L) {
+                        return false;
+                    }
+                    // The entry was replaced concurrently, try again with the replacement
+                    continue;
+                }
+            }
+            final Entry replacement = new Entry(target, hash, name, level, text, thrown, thrownType, now);
+            if (entries.compareAndSet(index, entry, replacement)) {
+                if (entry != null) {
+                    final long repeats = entry.repeats.getAndSet(CLOSED);
+                    if (repeats > 0L) {
+                        repeated(entry.target, entry.level, entry.message, repeats);
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private void sweep() {
+        final long intervalMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(windowNanos));
+        while (sweeper == Thread.currentThread()) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            expire(System.nanoTime(), false);
+        }
+    }
+
+    /**
+     * Removes the entries whose window has ended and reports their repeats. Invoked periodically by the sweeping
+     * thread.
+     *
+     * @param now the current {@link System#nanoTime() time}
+     * @param all {@code true} to remove every entry regardless of its window
+     */
+    void expire(final long now, final boolean all) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            final Entry entry = entries.get(i);
+            if (entry != null && (all || now - entry.start >= windowNanos) && entries.compareAndSet(i, entry, null)) {
+                // Occurrences counted until now are reported, later occurrences see the closed entry and are logged
+                final long repeats = entry.repeats.getAndSet(CLOSED);
+                if (repeats > 0L) {
+                    repeated(entry.target, entry.level, entry.message, repeats);
+                }
+            }
+        }
+    }
+
+    private static int hash(final String name, final int level, final String text, final String thrownType) {
+        int hash = name.hashCode();
+        hash = 31 * hash + level;
+        hash = 31 * hash + text.hashCode();
+        if (thrownType != null) {
+            hash = 31 * hash + thrownType.hashCode();
+        }
+        // Spread the high bits as the table index only uses the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry {
+        final Object target;
+        final int hash;
+        final String name;
+        final int level;
+        final String message;
+        final String thrownType;
+        final long start;
+        final AtomicLong repeats = new AtomicLong();
+        // The cause the entry was created with, a repeat of the same instance needs no frames
+        final Throwable thrown;
+        // The top frames of the cause, captured on the first comparison with a different instance
+        private volatile StackTraceElement[] frames;
+
+        Entry(final Object target, final int hash, final String name, final int level, final String message,
+              final Throwable thrown, final String thrownType, final long start) {
+            this.target = target;
+            this.hash = hash;
+            this.name = name;
+            this.level = level;
+            this.message = message;
+            this.thrown = thrown;
+            this.thrownType = thrownType;
+            this.start = start;
+        }
+
+        boolean matches(final int hash, final String name, final int level, final String message, final String thrownType) {
+            if (this.hash != hash || this.level != level || !this.name.equals(name) || !this.message.equals(message)) {
+                return false;
+            }
+            return this.thrownType == null ? thrownType == null : this.thrownType.equals(thrownType);
+        }
+
+        boolean matchesFrames(final StackTraceElement[] frames) {
+            final StackTraceElement[] ownFrames = frames();
+            if (ownFrames.length != Math.min(FRAME_COUNT, frames.length)) {
+                return false;
+            }
+            for (int i = 0; i < ownFrames.length; i++) {
+                // Does not render the frame, only the fields are compared
+                if (!ownFrames[i].equals(frames[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private StackTraceElement[] frames() {
+            StackTraceElement[] frames = this.frames;
+            if (frames == null) {
+                // Racing threads capture equal frames
+                final StackTraceElement[] stackTrace = thrown.getStackTrace();
+                frames = new StackTraceElement[Math.min(FRAME_COUNT, stackTrace.length)];
+                System.arraycopy(stackTrace, 0, frames, 0, frames.length);
+                this.frames = frames;
+            }
+            return frames;
+        }
+    }
+}
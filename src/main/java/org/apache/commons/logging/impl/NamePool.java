@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A weak intern pool for logger names.
+ * <p>
+ * Logger names are often built at runtime, for example by appending a suffix to a class name, which leaves an equal
+ * copy of the name behind each log. The pool hands back one canonical instance for each name so the copies can be
+ * collected. Unlike {@link String#intern()} the names are only held weakly, once no log refers to a name it is
+ * removed from the pool.
+ * </p>
+ * <p>
+ * Looking up a name which is already in the pool does not lock. Only adding a name updates the concurrent map, which
+ * also removes the names which have been collected.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class NamePool {
+    // Keyed and valued by the same weak reference, so the map never strongly refers to a name
+    private final ConcurrentMap<Object, Name> names = new ConcurrentHashMap<Object, Name>();
+    private final ReferenceQueue<String> collected = new ReferenceQueue<String>();
+
+    /**
+     * Returns the canonical instance of the name, adding the name to the pool if no equal name is present.
+     *
+     * @param name the name
+     *
+     * @return the canonical instance of the name
+     */
+    String intern(final String name) {
+        final Name existing = names.get(new Lookup(name));
+        if (existing != null) {
+            final String canonical = existing.get();
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+        expunge();
+        final Name added = new Name(name, collected);
+        while (true) {
+            final Name current = names.putIfAbsent(added, added);
+            if (current == null) {
+                return name;
+            }
+            final String canonical = current.get();
+            if (canonical != null) {
+                return canonical;
+            }
+            // Collected since it was found, but not yet expunged
+            names.remove(current, current);
+        }
+    }
+
+    /**
+     * Returns the number of names in the pool. Names which have been collected may still be counted.
+     *
+     * @return the number of names
+     */
+    int size() {
+        return names.size();
+    }
+
+    private void expunge() {
+        Reference<? extends String> reference;
+        while ((reference = collected.poll()) != null) {
+            names.remove(reference, reference);
+        }
+    }
+
+    /**
+     * A name in the pool. Once collected it is only equal to itself, so it can still be removed.
+     */
+    private static final class Name extends WeakReference<String> {
+        private final int hash;
+
+        Name(final String name, final ReferenceQueue<String> queue) {
+            super(name, queue);
+            hash = name.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            final String name = get();
+            if (name == null) {
+                return false;
+            }
+            if (obj instanceof Name) {
+                return name.equals(((Name) obj).get());
+            }
+            return obj instanceof Lookup && name.equals(((Lookup) obj).name);
+        }
+    }
+
+    /**
+     * The key a name is looked up with, which compares equal to the entry for an equal name.
+     */
+    private static final class Lookup {
+        private final String name;
+
+        Lookup(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof Name) {
+                return name.equals(((Name) obj).get());
+            }
+            return obj instanceof Lookup && name.equals(((Lookup) obj).name);
+        }
+    }
+}
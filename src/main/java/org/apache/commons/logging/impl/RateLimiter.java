@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of messages logged within a period of time.
+ * <p>
+ * The permits are refilled at the start of each period and split over the cells of a
+ * {@linkplain StripedCounter striped counter}, each thread taking permits from its own cell before the others. Once the
+ * permits are exhausted a rejected message only reads a volatile field and increments another striped counter, so
+ * neither permitted nor suppressed messages contend on a single location.
+ * </p>
+ * <p>
+ * The log which exhausts the permits of a period is remembered so the number of suppressed messages can be reported to
+ * it once the period ends, even if no further message is logged.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class RateLimiter {
+    private final long permits;
+    private final long periodNanos;
+    private final AtomicLong periodStart;
+    private final StripedCounter available = new StripedCounter();
+    private final StripedCounter suppressed = new StripedCounter();
+    private volatile boolean exhausted;
+    // The log the suppressed messages of the period are reported to, set when the permits are exhausted
+    private volatile JBossLog target;
+
+    /**
+     * Creates a new rate limiter.
+     *
+     * @param permits     the number of messages allowed each period
+     * @param periodNanos the length of the period in nanoseconds
+     */
+    RateLimiter(final long permits, final long periodNanos) {
+        this.permits = permits;
+        this.periodNanos = periodNanos;
+        periodStart = new AtomicLong(System.nanoTime());
+        available.fill(permits);
+    }
+
+    /**
+     * Starts a new period if the current period has ended.
+     *
+     * @param now the current {@link System#nanoTime() time}
+     *
+     * @return the number of messages suppressed in the period which ended if the calling thread started the new
+     * period, otherwise 0
+     */
+    long roll(final long now) {
+        final long start = periodStart.get();
+        if (now - start < periodNanos || !periodStart.compareAndSet(start, now)) {
+            return 0L;
+        }
+        available.fill(permits);
+        exhausted = false;
+        return suppressed.sumThenReset();
+    }
+
+    /**
+     * Returns the number of messages suppressed since the period started and starts counting again, without starting a
+     * new period.
+     *
+     * @return the number of suppressed messages
+     */
+    long drainSuppressed() {
+        return suppressed.sumThenReset();
+    }
+
+    /**
+     * Attempts to take a permit.
+     *
+     * @param log the log the message is logged to
+     *
+     * @return {@code true} if the message may be logged, {@code false} if it should be suppressed
+     */
+    boolean tryAcquire(final JBossLog log) {
+        if (!exhausted) {
+            if (available.tryTake()) {
+                return true;
+            }
+            target = log;
+            exhausted = true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * The log the suppressed messages are reported to.
+     *
+     * @return the log which exhausted the permits or {@code null} if no message was suppressed yet
+     */
+    JBossLog getTarget() {
+        return target;
+    }
+
+    /**
+     * The number of messages allowed each period.
+     *
+     * @return the number of permits
+     */
+    long getPermits() {
+        return permits;
+    }
+
+    /**
+     * The length of the period in nanoseconds.
+     *
+     * @return the length of the period
+     */
+    long getPeriodNanos() {
+        return periodNanos;
+    }
+}
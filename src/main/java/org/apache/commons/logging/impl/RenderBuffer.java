@@ -0,0 +1,325 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Date;
+
+/**
+ * A reusable buffer a log record is rendered into and written from.
+ * <p>
+ * Each thread has its own buffer which is {@linkplain #acquire() acquired} for the rendering of a single record. The
+ * text is assembled in a {@link StringBuilder} and {@linkplain #writeTo(PrintStream, Charset) encoded} into a reusable
+ * byte buffer, so once warmed up rendering a record allocates nothing beyond what the message and cause themselves
+ * allocate. If a record is logged while the buffer of the thread is in use, for example from the {@code toString()}
+ * of a message, a temporary buffer is used.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class RenderBuffer {
+    private static final int INITIAL_CAPACITY = 256;
+    // The largest number of chars, and of bytes, a thread keeps once a record is released. Each buffer which grew
+    // beyond it for an unusually large record is dropped, so every thread which ever logged holds at most this much.
+    static final int MAX_RETAINED_CAPACITY = 16384;
+    // Encoding a record of the largest retained length takes up to 4 bytes per char
+    static final int MAX_RETAINED_BYTES = MAX_RETAINED_CAPACITY * 4;
+    private static final String LINE_SEPARATOR = AccessController.doPrivileged(new PrivilegedAction<String>() {
+        @Override
+        public String run() {
+            return System.getProperty("line.separator", "\n");
+        }
+    });
+    private static final String STDERR_ENCODING = AccessController.doPrivileged(new PrivilegedAction<String>() {
+        @Override
+        public String run() {
+            final String encoding = System.getProperty("stderr.encoding");
+            return encoding == null ? System.getProperty("sun.stderr.encoding") : encoding;
+        }
+    });
+    // The stream System.err was when the class was initialized, which has the stderr encoding
+    private static final PrintStream INITIAL_STDERR = System.err;
+    // PrintStream.charset() was added in Java 18, null on earlier versions
+    private static final Method CHARSET_METHOD = charsetMethod();
+
+    private static final ThreadLocal<RenderBuffer> BUFFERS = new ThreadLocal<RenderBuffer>() {
+        @Override
+        protected RenderBuffer initialValue() {
+            return new RenderBuffer();
+        }
+    };
+
+    // The charset of the last stream written to, replaced when the stream changes
+    private static volatile StreamCharset streamCharset;
+
+    private final Date date = new Date();
+    private final PrintWriter stackTraceWriter = new PrintWriter(new BuilderWriter());
+    private StringBuilder builder = new StringBuilder(INITIAL_CAPACITY);
+    private char[] chars;
+    private CharBuffer charBuffer;
+    private ByteBuffer bytes;
+    private CharsetEncoder encoder;
+    private boolean inUse;
+
+    private RenderBuffer() {
+    }
+
+    /**
+     * Acquires the buffer of the current thread. The buffer must be {@linkplain #release() released} once the record
+     * has been written.
+     *
+     * @return an empty buffer
+     */
+    static RenderBuffer acquire() {
+        final RenderBuffer buffer = BUFFERS.get();
+        if (buffer.inUse) {
+            return new RenderBuffer();
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    /**
+     * Returns the charset the stream encodes characters with.
+     *
+     * @param stream the stream
+     *
+     * @return the charset or {@code null} if the charset cannot be determined or the stream may handle text other
+     * than by encoding it into its {@code write} methods
+     */
+    static Charset charsetOf(final PrintStream stream) {
+        final StreamCharset current = streamCharset;
+        if (current != null && current.stream == stream) {
+            return current.charset;
+        }
+        final Charset charset = resolveCharset(stream);
+        streamCharset = new StreamCharset(stream, charset);
+        return charset;
+    }
+
+    /**
+     * Releases the buffer so it can be reused for the next record of the thread.
+     */
+    void release() {
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            builder = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            builder.setLength(0);
+        }
+        if (chars != null && chars.length > MAX_RETAINED_CAPACITY) {
+            chars = null;
+            charBuffer = null;
+        }
+        if (bytes != null && bytes.capacity() > MAX_RETAINED_BYTES) {
+            bytes = null;
+        }
+        inUse = false;
+    }
+
+    /**
+     * The builder the record is rendered into.
+     *
+     * @return the builder
+     */
+    StringBuilder builder() {
+        return builder;
+    }
+
+    /**
+     * Returns a date, owned by this buffer, set to the time.
+     *
+     * @param millis the time in milliseconds
+     *
+     * @return the date
+     */
+    Date date(final long millis) {
+        date.setTime(millis);
+        return date;
+    }
+
+    /**
+     * Appends the stack trace of the cause, as {@link Throwable#printStackTrace()} prints it, to the builder.
+     *
+     * @param t the cause
+     */
+    void appendStackTrace(final Throwable t) {
+        t.printStackTrace(stackTraceWriter);
+        stackTraceWriter.flush();
+    }
+
+    /**
+     * Copies the rendered record into a new buffer for {@link SimpleLog#write(StringBuffer)}.
+     *
+     * @return a new buffer with the rendered record
+     */
+    StringBuffer toStringBuffer() {
+        return new StringBuffer(builder.length() + 16).append(builder);
+    }
+
+    /**
+     * Writes the rendered record followed by a line separator to the stream with a single write.
+     *
+     * @param stream  the stream to write to
+     * @param charset the charset to encode the record with
+     */
+    void writeTo(final PrintStream stream, final Charset charset) {
+        final ByteBuffer encoded = encode(charset);
+        stream.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+    }
+
+    /**
+     * Encodes the rendered record followed by a line separator. The returned buffer is owned by this buffer and
+     * only valid until the buffer is released.
+     *
+     * @param charset the charset to encode the record with
+     *
+     * @return a buffer with the encoded record between its position and limit
+     */
+    ByteBuffer encode(final Charset charset) {
+        builder.append(LINE_SEPARATOR);
+        final int length = builder.length();
+        if (chars == null || chars.length < length) {
+            chars = new char[Math.max(length, INITIAL_CAPACITY)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        builder.getChars(0, length, chars, 0);
+        charBuffer.clear();
+        charBuffer.limit(length);
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        encoder.reset();
+        final int required = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+        if (bytes == null || bytes.capacity() < required) {
+            bytes = ByteBuffer.allocate(Math.max(required, INITIAL_CAPACITY));
+        }
+        bytes.clear();
+        CoderResult result = encoder.encode(charBuffer, bytes, true);
+        while (result.isOverflow()) {
+            grow();
+            result = encoder.encode(charBuffer, bytes, true);
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            grow();
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private void grow() {
+        final ByteBuffer replacement = ByteBuffer.allocate(bytes.capacity() << 1);
+        bytes.flip();
+        replacement.put(bytes);
+        bytes = replacement;
+    }
+
+    /**
+     * Returns the charset of the standard error stream of the process.
+     *
+     * @return the charset
+     */
+    static Charset stderrCharset() {
+        if (STDERR_ENCODING != null) {
+            try {
+                return Charset.forName(STDERR_ENCODING);
+            } catch (IllegalArgumentException ignore) {
+                // Use the default
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    private static Charset resolveCharset(final PrintStream stream) {
+        // A subclass may intercept the print methods, the text must be printed for it to see it
+        if (stream == null || stream.getClass() != PrintStream.class) {
+            return null;
+        }
+        if (CHARSET_METHOD != null) {
+            try {
+                return (Charset) CHARSET_METHOD.invoke(stream);
+            } catch (Exception ignore) {
+                return null;
+            }
+        }
+        // Before Java 18 the charset of a stream is only known for the standard error stream
+        return stream == INITIAL_STDERR ? stderrCharset() : null;
+    }
+
+    private static Method charsetMethod() {
+        try {
+            return PrintStream.class.getMethod("charset");
+        } catch (NoSuchMethodException ignore) {
+            return null;
+        } catch (SecurityException ignore) {
+            return null;
+        }
+    }
+
+    private static final class StreamCharset {
+        final PrintStream stream;
+        final Charset charset;
+
+        StreamCharset(final PrintStream stream, final Charset charset) {
+            this.stream = stream;
+            this.charset = charset;
+        }
+    }
+
+    /**
+     * Appends to the builder of the buffer, used for printing stack traces without an intermediate string.
+     */
+    private final class BuilderWriter extends Writer {
+        @Override
+        public void write(final int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            builder.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            builder.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
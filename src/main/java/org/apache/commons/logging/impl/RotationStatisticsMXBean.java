@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * The statistics of the rotation of the file {@link SimpleLog} writes to when it is rolled by size or time.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public interface RotationStatisticsMXBean {
+
+    /**
+     * The name the statistics of the {@link SimpleLog} file rotation are registered with on the platform MBean server.
+     */
+    String SIMPLE_LOG_OBJECT_NAME = "org.apache.commons.logging:type=SimpleLog,name=rotation";
+
+    /**
+     * Returns the number of times the file has been rotated.
+     *
+     * @return the number of completed rotations
+     */
+    long getRotationCount();
+
+    /**
+     * Returns the number of times a rotation was deferred because the next file was not ready. Messages are written to
+     * the current file until the next file is ready.
+     *
+     * @return the number of deferred rotations
+     */
+    long getDeferredRotationCount();
+
+    /**
+     * Returns how long the last rotation took on the background thread, including compressing the rolled file and
+     * removing the files which are no longer retained.
+     *
+     * @return the duration of the last rotation in milliseconds
+     */
+    long getLastRotationTimeMillis();
+
+    /**
+     * Returns how long all the rotations took on the background thread.
+     *
+     * @return the total duration of the rotations in milliseconds
+     */
+    long getTotalRotationTimeMillis();
+
+    /**
+     * Returns the number of bytes of the rolled files which have been compressed.
+     *
+     * @return the number of bytes compressed
+     */
+    long getUncompressedBytes();
+
+    /**
+     * Returns the number of bytes the rolled files were compressed to.
+     *
+     * @return the number of compressed bytes written
+     */
+    long getCompressedBytes();
+
+    /**
+     * Returns the number of rolled files removed because they were no longer retained.
+     *
+     * @return the number of removed files
+     */
+    long getRemovedFileCount();
+}
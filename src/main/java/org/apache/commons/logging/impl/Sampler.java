@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+/**
+ * The per thread state used to sample messages.
+ * <p>
+ * Each thread has its own xorshift generator so sampling never contends. When a {@code is*Enabled()} check samples a
+ * message the decision is remembered, so the message guarded by the check is logged without being sampled again. Only
+ * the identity hash code of the log is remembered, never the log itself, and the decision is cleared by the next
+ * sampling decision on the thread whether or not it was used. Two logs with the same identity hash code can at worst
+ * let one unguarded message through unsampled.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class Sampler {
+    private static final ThreadLocal<Sampler> CURRENT = new ThreadLocal<Sampler>() {
+        @Override
+        protected Sampler initialValue() {
+            return new Sampler(Thread.currentThread().getId() ^ System.nanoTime());
+        }
+    };
+
+    private long seed;
+    // The identity hash code of the log and the level a guard check sampled, the level is 0 if nothing was granted
+    private int grantedLog;
+    private int grantedLevel;
+
+    private Sampler(final long seed) {
+        // The state of the generator must never be 0
+        this.seed = seed == 0L ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    /**
+     * Returns the sampler for the current thread.
+     *
+     * @return the sampler
+     */
+    static Sampler current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the next random value.
+     *
+     * @return a random value from 0 inclusive to 2<sup>31</sup> exclusive
+     */
+    long next() {
+        long x = seed;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        seed = x;
+        return (x * 0x2545F4914F6CDD1DL) >>> 33;
+    }
+
+    /**
+     * Remembers that a guard check for the log and level was sampled.
+     *
+     * @param log   the log
+     * @param level the level
+     */
+    void grant(final Object log, final int level) {
+        grantedLog = System.identityHashCode(log);
+        grantedLevel = level;
+    }
+
+    /**
+     * Checks if a guard check for the log and level was sampled and clears the remembered decision either way.
+     *
+     * @param log   the log
+     * @param level the level
+     *
+     * @return {@code true} if the message should be logged without sampling
+     */
+    boolean consume(final Object log, final int level) {
+        final int grantedLevel = this.grantedLevel;
+        if (grantedLevel == 0) {
+            return false;
+        }
+        this.grantedLevel = 0;
+        return grantedLevel == level && grantedLog == System.identityHashCode(log);
+    }
+}
@@ -19,14 +19,38 @@
 
 package org.apache.commons.logging.impl;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.logging.Log;
 
@@ -42,7 +66,9 @@ import org.apache.commons.logging.Log;
  * <li><code>org.apache.commons.logging.simplelog.log.xxxxx</code> -
  * Logging detail level for a SimpleLog instance named "xxxxx".
  * Must be one of ("trace", "debug", "info", "warn", "error", or "fatal").
- * If not specified, the default org.apache.commons.logging detail level is used.</li>
+ * If not specified, the default org.apache.commons.logging detail level is used.
+ * The levels are read once, properties set later only apply once
+ * {@link #reloadLevels()} is invoked.</li>
  * <li><code>org.apache.commons.logging.simplelog.showlogname</code> -
  * Set to <code>true</code> if you want the Log instance name to be
  * included in output messages. Defaults to <code>false</code>.</li>
@@ -58,6 +84,78 @@ import org.apache.commons.logging.Log;
  * used in <code>java.text.SimpleDateFormat</code>. If the format is not
  * specified or is invalid, the default format is used.
  * The default format is <code>yyyy/MM/dd HH:mm:ss:SSS zzz</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.clockResolution</code> -
+ * The resolution in milliseconds of the clock the date and time are read
+ * from. If set, a background thread updates the time at this interval and
+ * messages read the last update rather than the system clock. By default
+ * the system clock is read for each message.</li>
+ * <li><code>org.apache.commons.logging.simplelog.logFile</code> -
+ * The file messages are appended to instead of <code>System.err</code>.
+ * Messages are buffered and written according to the <code>flushPolicy</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.bufferedConsole</code> -
+ * Set to <code>true</code> to write messages to the standard error stream of
+ * the process through a buffer instead of through <code>System.err</code>.
+ * Ignored if a <code>logFile</code> is configured. Default is <code>false</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.flushPolicy</code> -
+ * When the messages buffered for the <code>logFile</code> or
+ * <code>bufferedConsole</code> are written. A comma separated list of
+ * <code>immediate</code>, <code>records:N</code> to write once N messages are
+ * buffered, <code>interval:MILLIS</code> to write at an interval and
+ * <code>error</code> to write once an error or fatal message is logged.
+ * Buffered messages are also written when the buffer is full and when the
+ * JVM exits. Default is <code>immediate</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.mappedFile</code> -
+ * The file messages are appended to through a memory mapped region instead
+ * of <code>System.err</code>. Takes precedence over <code>logFile</code>.
+ * Messages are visible to readers of the file as soon as they are logged and
+ * are not lost if the JVM fails, but are only guaranteed to reach the disk
+ * when the operating system writes the pages back. Not available when the
+ * default charset encodes characters with zero bytes, such as UTF-16.</li>
+ * <li><code>org.apache.commons.logging.simplelog.mappedRegionSize</code> -
+ * The number of bytes of the <code>mappedFile</code> mapped at a time. The
+ * size may end in <code>k</code>, <code>m</code> or <code>g</code>. Default
+ * is <code>1m</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.maxFileSize</code> -
+ * The size the <code>mappedFile</code> is rolled at. The size may end in
+ * <code>k</code>, <code>m</code> or <code>g</code>. A rolled file is renamed
+ * with the time it was rolled appended to its name. By default the file is
+ * not rolled by size.</li>
+ * <li><code>org.apache.commons.logging.simplelog.rollInterval</code> -
+ * The interval in milliseconds the <code>mappedFile</code> is rolled at. The
+ * file is rolled by the first message logged after the interval. By default
+ * the file is not rolled by time. Rolling only swaps the file messages are
+ * written to for one a background thread has already opened, the rolled file
+ * is renamed, compressed and removed on the background thread.</li>
+ * <li><code>org.apache.commons.logging.simplelog.compressRolledFiles</code> -
+ * Set to <code>true</code> to compress the rolled files with gzip, which
+ * appends <code>.gz</code> to their name. Default is <code>false</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.maxRolledFiles</code> -
+ * The number of rolled files retained, the oldest are removed once the file
+ * is rolled. By default all the rolled files are retained.</li>
+ * <li><code>org.apache.commons.logging.simplelog.async</code> -
+ * Set to <code>true</code> to write messages on a background thread. Messages
+ * are queued with the time they were logged, messages which are not strings
+ * are converted to a string before they are queued. Note that subclasses which
+ * override <code>write(StringBuffer)</code> are invoked on the background
+ * thread. Default is <code>false</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.asyncQueueLength</code> -
+ * The number of messages which can be queued, rounded up to a power of two.
+ * Default is <code>1024</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.asyncOverflowPolicy</code> -
+ * What happens when the queue is full. One of <code>block</code>, which waits
+ * for space in the queue, <code>discard</code>, which drops the message,
+ * <code>discard-oldest</code>, which drops the oldest queued message, or
+ * <code>caller-runs</code>, which writes the message on the calling thread.
+ * Default is <code>block</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.asyncShutdownTimeout</code> -
+ * How long in milliseconds the JVM waits on exit for the queued messages to
+ * be written. Default is <code>10000</code>.</li>
+ * <li><code>org.apache.commons.logging.simplelog.coalesceWindow</code> -
+ * The window in milliseconds in which repeated messages are coalesced. Only the
+ * first of the same message, with a cause of the same type thrown from the same
+ * place, is logged in the window. Once the window ends a message with the number
+ * of repeats is logged, at the latest one window later. By default messages are
+ * not coalesced.</li>
  * </ul>
  * <p>
  * In addition to looking for system properties with the names specified
@@ -123,6 +221,42 @@ public class SimpleLog implements Log, Serializable {
      */
     static protected DateFormat dateFormatter = null;
 
+    /**
+     * Formats times as <code>dateFormatter</code> does without locking it,
+     * <code>null</code> if the date and time are not shown. Only used while
+     * <code>dateFormatter</code> is the format it was created for.
+     */
+    private static final TimestampFormatter timestampFormatter;
+
+    /**
+     * The clock the date and time are read from, <code>null</code> to read
+     * the system clock
+     */
+    private static final CoarseClock clock;
+
+    /**
+     * Writes messages to the configured file or the standard error stream,
+     * <code>null</code> to write them to <code>System.err</code>
+     */
+    private static final LogSink logSink;
+
+    /**
+     * Queues messages for the background thread, <code>null</code> if
+     * messages are written on the calling thread
+     */
+    private static final AsyncDispatcher dispatcher;
+
+    /**
+     * Coalesces repeated messages, <code>null</code> if messages are not coalesced
+     */
+    private static final MessageCoalescer coalescer;
+
+    /**
+     * The levels configured with the <code>log.xxxxx</code> and <code>defaultlog</code> properties. The trie is
+     * immutable and replaced as a whole when the levels are reloaded.
+     */
+    private static volatile LevelTrie levels;
+
     // ---------------------------------------------------- Log Level Constants
 
     /**
@@ -150,6 +284,39 @@ public class SimpleLog implements Log, Serializable {
      */
     public static final int LOG_LEVEL_FATAL = 6;
 
+    /**
+     * The readable representation of each level, indexed by the level
+     */
+    private static final String[] LEVEL_TAGS = {
+            null, "[TRACE] ", "[DEBUG] ", "[INFO] ", "[WARN] ", "[ERROR] ", "[FATAL] "
+    };
+
+    /**
+     * The size of each of the buffers of the log writer
+     */
+    private static final int WRITER_BUFFER_SIZE = 65536;
+
+    /**
+     * The default number of bytes of the mapped file mapped at a time
+     */
+    private static final int DEFAULT_MAPPED_REGION_SIZE = 1 << 20;
+
+    /**
+     * The default number of messages which can be queued when logging asynchronously
+     */
+    private static final int DEFAULT_ASYNC_QUEUE_LENGTH = 1024;
+
+    /**
+     * The parameter types of <code>write(StringBuffer)</code>
+     */
+    private static final Class<?>[] WRITE_PARAMETERS = {StringBuffer.class};
+
+    /**
+     * The subclasses which have been checked for an override of <code>write(StringBuffer)</code>
+     */
+    private static final Map<Class<?>, Boolean> WRITE_OVERRIDDEN =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+
     /**
      * Enable all org.apache.commons.logging levels
      */
@@ -211,7 +378,17 @@ public class SimpleLog implements Log, Serializable {
                 dateTimeFormat = DEFAULT_DATE_TIME_FORMAT;
                 dateFormatter = new SimpleDateFormat(dateTimeFormat);
             }
+            timestampFormatter = TimestampFormatter.create((SimpleDateFormat) dateFormatter);
+            clock = createClock();
+        } else {
+            timestampFormatter = null;
+            clock = null;
         }
+
+        coalescer = createCoalescer();
+        levels = createLevels();
+        logSink = createLogSink();
+        dispatcher = createDispatcher();
     }
 
     // ------------------------------------------------------------- Attributes
@@ -225,9 +402,19 @@ public class SimpleLog implements Log, Serializable {
      */
     protected volatile int currentLogLevel;
     /**
-     * The short name of this simple log instance
+     * The short name of this simple log instance followed by the separator
+     */
+    private transient volatile String shortNamePrefix = null;
+    /**
+     * The name of this simple log instance followed by the separator
+     */
+    private transient volatile String logNamePrefix = null;
+    /**
+     * Whether a subclass overrides <code>write(StringBuffer)</code>, in which
+     * case each message is handed to it in a new buffer. Not final as it is
+     * recomputed when a subclass is deserialized.
      */
-    private volatile String shortLogName = null;
+    private transient boolean writeOverridden = isWriteOverridden(getClass());
 
     // ------------------------------------------------------------ Constructor
 
@@ -239,45 +426,21 @@ public class SimpleLog implements Log, Serializable {
     public SimpleLog(String name) {
         logName = name;
 
-        // Set initial log level
-        // Used to be: set default log level to ERROR
-        // IMHO it should be lower, but at least info ( costin ).
-        setLevel(LOG_LEVEL_INFO);
-
-        // Set log level from properties
-        String lvl = getStringProperty(systemPrefix + "log." + logName);
-        int i = String.valueOf(name).lastIndexOf(".");
-        while (null == lvl && i > -1) {
-            name = name.substring(0, i);
-            lvl = getStringProperty(systemPrefix + "log." + name);
-            i = String.valueOf(name).lastIndexOf(".");
-        }
-
-        if (null == lvl) {
-            lvl = getStringProperty(systemPrefix + "defaultlog");
-        }
-
-        if ("all".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_ALL);
-        } else if ("trace".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_TRACE);
-        } else if ("debug".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_DEBUG);
-        } else if ("info".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_INFO);
-        } else if ("warn".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_WARN);
-        } else if ("error".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_ERROR);
-        } else if ("fatal".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_FATAL);
-        } else if ("off".equalsIgnoreCase(lvl)) {
-            setLevel(LOG_LEVEL_OFF);
-        }
+        // Set log level from properties, the most specific name configured wins
+        setLevel(levels.level(String.valueOf(name)));
     }
 
     // -------------------------------------------------------- Properties
 
+    /**
+     * Reloads the levels configured with the <code>log.xxxxx</code> and
+     * <code>defaultlog</code> properties. Logs created afterwards use the
+     * new levels, the level of existing logs is unchanged.
+     */
+    public static void reloadLevels() {
+        levels = createLevels();
+    }
+
     /**
      * Set org.apache.commons.logging level.
      *
@@ -307,72 +470,111 @@ public class SimpleLog implements Log, Serializable {
      * @param t       The exception whose stack trace should be logged
      */
     protected void log(int type, Object message, Throwable t) {
-        // Use a string buffer for better performance
-        final StringBuffer buf = new StringBuffer();
+        if (coalescer != null && !coalescer.accept(this, String.valueOf(logName), type, message, t, System.nanoTime())) {
+            return;
+        }
+        emit(type, message, t);
+    }
 
-        // Append date-time if so configured
-        if (showDateTime) {
-            final Date now = new Date();
-            String dateText;
-            synchronized (dateFormatter) {
-                dateText = dateFormatter.format(now);
+    /**
+     * Queues the message if logging asynchronously, otherwise writes it.
+     */
+    private void emit(int type, Object message, Throwable t) {
+        final long timestamp = showDateTime ? currentTimeMillis() : 0L;
+        // Only strings are queued as they are, anything else could change before it is written
+        if (dispatcher != null && dispatcher.dispatch(this, type, message instanceof String ? message : String.valueOf(message), t, timestamp, null)) {
+            return;
+        }
+        render(type, message, t, timestamp);
+    }
+
+    /**
+     * Assembles the message and writes it.
+     */
+    private void render(int type, Object message, Throwable t, long timestamp) {
+        // Render into the reusable buffer of the thread rather than allocating a buffer per message
+        final RenderBuffer renderBuffer = RenderBuffer.acquire();
+        try {
+            final StringBuilder buf = renderBuffer.builder();
+
+            // Append date-time if so configured
+            if (showDateTime) {
+                if (timestampFormatter != null && timestampFormatter.mirrors(dateFormatter)) {
+                    timestampFormatter.format(timestamp, buf);
+                } else {
+                    String dateText;
+                    synchronized (dateFormatter) {
+                        dateText = dateFormatter.format(renderBuffer.date(timestamp));
+                    }
+                    buf.append(dateText);
+                }
+                buf.append(' ');
             }
-            buf.append(dateText);
-            buf.append(" ");
-        }
-
-        // Append a readable representation of the log level
-        switch (type) {
-            case LOG_LEVEL_TRACE:
-                buf.append("[TRACE] ");
-                break;
-            case LOG_LEVEL_DEBUG:
-                buf.append("[DEBUG] ");
-                break;
-            case LOG_LEVEL_INFO:
-                buf.append("[INFO] ");
-                break;
-            case LOG_LEVEL_WARN:
-                buf.append("[WARN] ");
-                break;
-            case LOG_LEVEL_ERROR:
-                buf.append("[ERROR] ");
-                break;
-            case LOG_LEVEL_FATAL:
-                buf.append("[FATAL] ");
-                break;
-        }
-
-        // Append the name of the log instance if so configured
-        if (showShortName) {
-            if (shortLogName == null) {
-                // Cut all but the last component of the name for both styles
-                final String slName = logName.substring(logName.lastIndexOf(".") + 1);
-                shortLogName = slName.substring(slName.lastIndexOf("/") + 1);
+
+            // Append a readable representation of the log level
+            if (type >= LOG_LEVEL_TRACE && type <= LOG_LEVEL_FATAL) {
+                buf.append(LEVEL_TAGS[type]);
             }
-            buf.append(String.valueOf(shortLogName)).append(" - ");
-        } else if (showLogName) {
-            buf.append(String.valueOf(logName)).append(" - ");
-        }
 
-        // Append the message
-        buf.append(String.valueOf(message));
+            // Append the name of the log instance if so configured
+            if (showShortName) {
+                String prefix = shortNamePrefix;
+                if (prefix == null) {
+                    // Cut all but the last component of the name for both styles
+                    final String slName = logName.substring(logName.lastIndexOf(".") + 1);
+                    prefix = shortNamePrefix = slName.substring(slName.lastIndexOf("/") + 1) + " - ";
+                }
+                buf.append(prefix);
+            } else if (showLogName) {
+                String prefix = logNamePrefix;
+                if (prefix == null) {
+                    prefix = logNamePrefix = logName + " - ";
+                }
+                buf.append(prefix);
+            }
+
+            // Append the message
+            buf.append(message);
 
-        // Append stack trace if not null
-        if (t != null) {
-            buf.append(" <");
-            buf.append(t.toString());
-            buf.append(">");
+            // Append stack trace if not null
+            if (t != null) {
+                buf.append(" <");
+                buf.append(t);
+                buf.append('>');
+                renderBuffer.appendStackTrace(t);
+            }
 
-            final java.io.StringWriter sw = new java.io.StringWriter(1024);
-            final java.io.PrintWriter pw = new java.io.PrintWriter(sw);
-            t.printStackTrace(pw);
-            pw.close();
-            buf.append(sw.toString());
+            // Print to the appropriate destination
+            if (writeOverridden) {
+                write(renderBuffer.toStringBuffer());
+            } else {
+                print(type, renderBuffer);
+            }
+        } finally {
+            renderBuffer.release();
         }
+    }
 
-        // Print to the appropriate destination
-        write(buf);
+    /**
+     * Writes the rendered message to the configured log writer or to
+     * <code>System.err</code> without an intermediate string. Falls back to
+     * printing the text if the encoding of the stream is not known.
+     *
+     * @param type         the level of the message
+     * @param renderBuffer the buffer holding the rendered message
+     */
+    void print(int type, RenderBuffer renderBuffer) {
+        if (logSink != null) {
+            logSink.write(renderBuffer.encode(logSink.charset()), type >= LOG_LEVEL_ERROR);
+            return;
+        }
+        final PrintStream err = System.err;
+        final Charset charset = RenderBuffer.charsetOf(err);
+        if (charset == null) {
+            err.println(renderBuffer.builder().toString());
+        } else {
+            renderBuffer.writeTo(err, charset);
+        }
     }
 
     /**
@@ -630,6 +832,328 @@ public class SimpleLog implements Log, Serializable {
         return isLevelEnabled(LOG_LEVEL_WARN);
     }
 
+    /**
+     * Replaces this log with its compact serialized form. As this method is private subclasses are still serialized
+     * with their fields.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return LogProxy.simpleLog(logName, currentLogLevel);
+    }
+
+    /**
+     * Only invoked for subclasses, which are serialized with their fields.
+     * Field initializers are not run on deserialization, so the transient
+     * state is computed again.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        writeOverridden = isWriteOverridden(getClass());
+    }
+
+    /**
+     * Returns the statistics of the queue used when logging asynchronously.
+     * The statistics are also registered on the platform MBean server as
+     * {@link AsyncStatisticsMXBean#SIMPLE_LOG_OBJECT_NAME}.
+     *
+     * @return the statistics or <code>null</code> if messages are not
+     * logged asynchronously
+     */
+    public static AsyncStatisticsMXBean getAsyncStatistics() {
+        return dispatcher;
+    }
+
+    /**
+     * Returns the statistics of the rotation of the <code>mappedFile</code>.
+     * The statistics are also registered on the platform MBean server as
+     * {@link RotationStatisticsMXBean#SIMPLE_LOG_OBJECT_NAME}.
+     *
+     * @return the statistics or <code>null</code> if the file is not rolled
+     */
+    public static RotationStatisticsMXBean getRotationStatistics() {
+        if (logSink instanceof MappedLogFile && ((MappedLogFile) logSink).isRolled()) {
+            return (MappedLogFile) logSink;
+        }
+        return null;
+    }
+
+    private static long currentTimeMillis() {
+        return clock == null ? System.currentTimeMillis() : clock.millis();
+    }
+
+    private static AsyncDispatcher createDispatcher() {
+        if (!getBooleanProperty(systemPrefix + "async", false)) {
+            return null;
+        }
+        final int queueLength = getPositiveInt(systemPrefix + "asyncQueueLength", DEFAULT_ASYNC_QUEUE_LENGTH);
+        final long shutdownTimeout = getPositiveInt(systemPrefix + "asyncShutdownTimeout", (int) AsyncDispatcher.CLOSE_TIMEOUT_MILLIS);
+        AsyncDispatcher.OverflowPolicy overflowPolicy = AsyncDispatcher.OverflowPolicy.BLOCK;
+        final String policy = getStringProperty(systemPrefix + "asyncOverflowPolicy");
+        if (policy != null) {
+            try {
+                overflowPolicy = AsyncDispatcher.OverflowPolicy.valueOf(policy.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                // Ignore, the queue blocks
+            }
+        }
+        final AsyncDispatcher result = new AsyncDispatcher("SimpleLog-async", queueLength, AsyncDispatcher.WaitStrategy.PARK,
+                overflowPolicy, shutdownTimeout) {
+            @Override
+            void deliver(final Event event) {
+                ((SimpleLog) event.target).render(event.level, event.message, event.thrown, event.timestamp);
+            }
+
+            @Override
+            void close() {
+                super.close();
+                if (logSink instanceof MappedLogFile) {
+                    logSink.close();
+                } else if (logSink != null) {
+                    // The messages written from the queue may still be buffered
+                    logSink.flush();
+                }
+            }
+        };
+        if (logSink instanceof MappedLogFile) {
+            // Closing the file from its own shutdown hook would drop the messages still queued, the file is closed
+            // once the queue is drained instead
+            ((MappedLogFile) logSink).removeShutdownHook();
+        }
+        registerMBean(result, AsyncStatisticsMXBean.SIMPLE_LOG_OBJECT_NAME);
+        return result;
+    }
+
+    /**
+     * Registers statistics on the platform MBean server. Failures are ignored
+     * as the statistics are also available from the static accessors.
+     */
+    private static void registerMBean(final Object mbean, final String objectName) {
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                try {
+                    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                    ObjectName name = new ObjectName(objectName);
+                    if (server.isRegistered(name)) {
+                        // Another copy of the library is loaded by a different class loader
+                        name = new ObjectName(objectName + ",id=" + Integer.toHexString(System.identityHashCode(mbean)));
+                    }
+                    server.registerMBean(mbean, name);
+                } catch (Exception e) {
+                    // Ignore
+                }
+                return null;
+            }
+        });
+    }
+
+    private static int getPositiveInt(String name, int dephault) {
+        final String value = getStringProperty(name);
+        if (value != null) {
+            try {
+                final int result = Integer.parseInt(value.trim());
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                // Ignore, the default is used
+            }
+        }
+        return dephault;
+    }
+
+    /**
+     * Parses a size in bytes which may end in <code>k</code>, <code>m</code> or <code>g</code>.
+     *
+     * @return the size or <code>dephault</code> if the property is not set, is invalid or is not positive
+     */
+    private static long getSize(String name, long dephault) {
+        final String value = getStringProperty(name);
+        if (value != null) {
+            String digits = value.trim().toLowerCase(Locale.ROOT);
+            int shift = 0;
+            if (digits.endsWith("k")) {
+                shift = 10;
+            } else if (digits.endsWith("m")) {
+                shift = 20;
+            } else if (digits.endsWith("g")) {
+                shift = 30;
+            }
+            if (shift > 0) {
+                digits = digits.substring(0, digits.length() - 1).trim();
+            }
+            try {
+                final long result = Long.parseLong(digits);
+                if (result > 0L && result <= (Long.MAX_VALUE >> shift)) {
+                    return result << shift;
+                }
+            } catch (NumberFormatException e) {
+                // Ignore, the default is used
+            }
+        }
+        return dephault;
+    }
+
+    private static LogSink createLogSink() {
+        final String mappedFile = getStringProperty(systemPrefix + "mappedFile");
+        if (mappedFile != null) {
+            // A region is mapped as a single buffer so it cannot exceed the size of an array
+            final int regionSize = (int) Math.min(Integer.MAX_VALUE,
+                    getSize(systemPrefix + "mappedRegionSize", DEFAULT_MAPPED_REGION_SIZE));
+            final long maxFileSize = getSize(systemPrefix + "maxFileSize", 0L);
+            final long rollInterval = getPositiveInt(systemPrefix + "rollInterval", 0);
+            final boolean compress = getBooleanProperty(systemPrefix + "compressRolledFiles", false);
+            final int maxRolledFiles = getPositiveInt(systemPrefix + "maxRolledFiles", 0);
+            if (!MappedLogFile.isSupported(Charset.defaultCharset())) {
+                System.err.println("The log file " + mappedFile + " cannot be written with the charset " + Charset.defaultCharset() +
+                        ", messages are written to System.err");
+                return null;
+            }
+            try {
+                final MappedLogFile result = AccessController.doPrivileged(new PrivilegedExceptionAction<MappedLogFile>() {
+                    public MappedLogFile run() throws IOException {
+                        return MappedLogFile.open(new File(mappedFile), Charset.defaultCharset(), regionSize, maxFileSize,
+                                rollInterval, compress, maxRolledFiles);
+                    }
+                });
+                if (result.isRolled()) {
+                    registerMBean(result, RotationStatisticsMXBean.SIMPLE_LOG_OBJECT_NAME);
+                }
+                return result;
+            } catch (PrivilegedActionException e) {
+                System.err.println("Failed to open the log file " + mappedFile + ", messages are written to System.err: " + e.getCause());
+                return null;
+            }
+        }
+        final String logFile = getStringProperty(systemPrefix + "logFile");
+        final LogWriter.Policy policy = LogWriter.Policy.parse(getStringProperty(systemPrefix + "flushPolicy"));
+        if (logFile != null) {
+            try {
+                final FileChannel channel = AccessController.doPrivileged(new PrivilegedExceptionAction<FileChannel>() {
+                    public FileChannel run() throws IOException {
+                        return new FileOutputStream(logFile, true).getChannel();
+                    }
+                });
+                return new LogWriter("SimpleLog-writer", channel, true, Charset.defaultCharset(), WRITER_BUFFER_SIZE, policy);
+            } catch (PrivilegedActionException e) {
+                System.err.println("Failed to open the log file " + logFile + ", messages are written to System.err: " + e.getCause());
+                return null;
+            }
+        }
+        if (getBooleanProperty(systemPrefix + "bufferedConsole", false)) {
+            // The stream is never closed, which would close the standard error stream of the process
+            final FileChannel channel = AccessController.doPrivileged(new PrivilegedAction<FileChannel>() {
+                public FileChannel run() {
+                    return new FileOutputStream(FileDescriptor.err).getChannel();
+                }
+            });
+            return new LogWriter("SimpleLog-writer", channel, false, RenderBuffer.stderrCharset(), WRITER_BUFFER_SIZE, policy);
+        }
+        return null;
+    }
+
+    private static CoarseClock createClock() {
+        final String resolution = getStringProperty(systemPrefix + "clockResolution");
+        if (resolution != null) {
+            try {
+                final long millis = Long.parseLong(resolution.trim());
+                if (millis > 0L) {
+                    return CoarseClock.start("SimpleLog-clock", millis);
+                }
+            } catch (NumberFormatException e) {
+                // Ignore, the system clock is read
+            }
+        }
+        return null;
+    }
+
+    private static MessageCoalescer createCoalescer() {
+        final String window = getStringProperty(systemPrefix + "coalesceWindow");
+        if (window != null) {
+            try {
+                final long millis = Long.parseLong(window.trim());
+                if (millis > 0L) {
+                    final MessageCoalescer result = new MessageCoalescer(TimeUnit.MILLISECONDS.toNanos(millis)) {
+                        @Override
+                        void repeated(final Object target, final int level, final String message, final long count) {
+                            ((SimpleLog) target).emit(level, "Message repeated " + count + " times: " + message, null);
+                        }
+                    };
+                    result.start("SimpleLog-coalescer");
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                // Ignore, messages are not coalesced
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWriteOverridden(final Class<?> type) {
+        if (type == SimpleLog.class) {
+            return false;
+        }
+        Boolean overridden = WRITE_OVERRIDDEN.get(type);
+        if (overridden == null) {
+            try {
+                overridden = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                    public Boolean run() {
+                        for (Class<?> c = type; c != SimpleLog.class; c = c.getSuperclass()) {
+                            for (Method method : c.getDeclaredMethods()) {
+                                if ("write".equals(method.getName()) && Arrays.equals(WRITE_PARAMETERS, method.getParameterTypes())) {
+                                    return Boolean.TRUE;
+                                }
+                            }
+                        }
+                        return Boolean.FALSE;
+                    }
+                });
+            } catch (SecurityException e) {
+                // Assume it is overridden, which is always safe
+                overridden = Boolean.TRUE;
+            }
+            WRITE_OVERRIDDEN.put(type, overridden);
+        }
+        return overridden;
+    }
+
+    private static LevelTrie createLevels() {
+        final String logPrefix = systemPrefix + "log.";
+        final Set<String> keys = new HashSet<String>(simpleLogProps.stringPropertyNames());
+        try {
+            keys.addAll(System.getProperties().stringPropertyNames());
+        } catch (SecurityException e) {
+            // Ignore, only the names from simplelog.properties are known
+        }
+        final Map<String, Integer> configured = new HashMap<String, Integer>();
+        for (String key : keys) {
+            if (key.startsWith(logPrefix)) {
+                // System properties take precedence over simplelog.properties
+                configured.put(key.substring(logPrefix.length()), toLevel(getStringProperty(key)));
+            }
+        }
+        return LevelTrie.create(configured, toLevel(getStringProperty(systemPrefix + "defaultlog")));
+    }
+
+    private static int toLevel(final String lvl) {
+        if ("all".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_ALL;
+        } else if ("trace".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_TRACE;
+        } else if ("debug".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_DEBUG;
+        } else if ("warn".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_WARN;
+        } else if ("error".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_ERROR;
+        } else if ("fatal".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_FATAL;
+        } else if ("off".equalsIgnoreCase(lvl)) {
+            return LOG_LEVEL_OFF;
+        }
+        // Used to be: set default log level to ERROR
+        // IMHO it should be lower, but at least info ( costin ).
+        return LOG_LEVEL_INFO;
+    }
+
     private static InputStream getResourceAsStream(final String name) {
         return (InputStream) AccessController.doPrivileged(
                 new PrivilegedAction() {
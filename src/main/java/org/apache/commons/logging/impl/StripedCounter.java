@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which spreads increments over several cells to avoid contention between threads. Each cell is padded to
+ * its own cache line.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class StripedCounter {
+    // A long is 8 bytes, 16 longs keeps the cells on separate cache lines including the adjacent line prefetch
+    private static final int PADDING_SHIFT = 4;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES << PADDING_SHIFT);
+
+    /**
+     * Adds one to the counter.
+     */
+    void increment() {
+        cells.getAndIncrement(index());
+    }
+
+    /**
+     * Adds the value to the counter.
+     *
+     * @param value the value to add
+     */
+    void add(final long value) {
+        cells.getAndAdd(index(), value);
+    }
+
+    /**
+     * Returns the sum of the cells. The result is not an atomic snapshot if the counter is concurrently updated.
+     *
+     * @return the current sum
+     */
+    long sum() {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i << PADDING_SHIFT);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the cells and resets each cell to zero. Increments made concurrently are either included in
+     * the result or remain in the counter.
+     *
+     * @return the sum before the reset
+     */
+    long sumThenReset() {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.getAndSet(i << PADDING_SHIFT, 0L);
+        }
+        return sum;
+    }
+
+    /**
+     * Spreads the value over the cells, replacing their current values. Used together with {@link #tryTake()} the
+     * counter acts as a budget which threads draw from their own cell.
+     *
+     * @param value the value to spread
+     */
+    void fill(final long value) {
+        final long share = value / STRIPES;
+        final long remainder = value % STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i << PADDING_SHIFT, i < remainder ? share + 1L : share);
+        }
+    }
+
+    /**
+     * Takes one from the cell of the calling thread, or from another cell once that cell is empty.
+     *
+     * @return {@code true} if one was taken, {@code false} if every cell is empty
+     */
+    boolean tryTake() {
+        final int home = index();
+        if (tryTake(home)) {
+            return true;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            final int index = i << PADDING_SHIFT;
+            if (index != home && tryTake(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tryTake(final int index) {
+        long value;
+        while ((value = cells.get(index)) > 0L) {
+            if (cells.compareAndSet(index, value, value - 1L)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int index() {
+        // Thread ids are sequential, spread them so neighbouring threads use different cells
+        final long id = Thread.currentThread().getId();
+        final int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return (hash & (STRIPES - 1)) << PADDING_SHIFT;
+    }
+
+    private static int stripes() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        // Round up to a power of two, with at least two stripes
+        return Integer.highestOneBit(Math.max(2, processors) - 1) << 1;
+    }
+}
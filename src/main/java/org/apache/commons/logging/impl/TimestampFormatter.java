@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Formats timestamps exactly as a {@link SimpleDateFormat} would without locking it for each timestamp.
+ * <p>
+ * The pattern is split at each millisecond field. The text between the millisecond fields only changes once a
+ * second, so it is formatted once for each second and published in an immutable holder. Formatting a timestamp within
+ * the same second only appends the cached text with the milliseconds patched in, which neither locks nor allocates.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class TimestampFormatter {
+    private static final int MILLIS_PER_SECOND = 1000;
+
+    private final SimpleDateFormat format;
+    // Formats the text between the millisecond fields, guarded by the formatter
+    private final SimpleDateFormat[] pieceFormats;
+    // The minimum number of digits of each millisecond field
+    private final int[] millisWidths;
+    private final char zeroDigit;
+    private final Date date = new Date();
+    private volatile Second second;
+
+    private TimestampFormatter(final SimpleDateFormat format, final SimpleDateFormat[] pieceFormats, final int[] millisWidths, final char zeroDigit) {
+        this.format = format;
+        this.pieceFormats = pieceFormats;
+        this.millisWidths = millisWidths;
+        this.zeroDigit = zeroDigit;
+    }
+
+    /**
+     * Creates a formatter producing the same text as the format.
+     *
+     * @param format the format to mirror, which must not be modified afterwards
+     *
+     * @return the formatter or {@code null} if the format cannot be mirrored
+     */
+    static TimestampFormatter create(final SimpleDateFormat format) {
+        final NumberFormat numberFormat = format.getNumberFormat();
+        if (!(numberFormat instanceof DecimalFormat)) {
+            return null;
+        }
+        final String pattern = format.toPattern();
+        final List<String> pieces = new ArrayList<String>();
+        final List<Integer> widths = new ArrayList<Integer>();
+        boolean quoted = false;
+        int start = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '\'') {
+                // An escaped quote, '', toggles twice which leaves the state unchanged
+                quoted = !quoted;
+                i++;
+            } else if (c == 'S' && !quoted) {
+                int end = i;
+                while (end < pattern.length() && pattern.charAt(end) == 'S') {
+                    end++;
+                }
+                pieces.add(pattern.substring(start, i));
+                widths.add(end - i);
+                start = i = end;
+            } else {
+                i++;
+            }
+        }
+        pieces.add(pattern.substring(start));
+        final SimpleDateFormat[] pieceFormats = new SimpleDateFormat[pieces.size()];
+        for (int p = 0; p < pieceFormats.length; p++) {
+            // Clone so the locale, symbols, calendar and time zone match
+            final SimpleDateFormat pieceFormat = (SimpleDateFormat) format.clone();
+            pieceFormat.applyPattern(pieces.get(p));
+            pieceFormats[p] = pieceFormat;
+        }
+        final int[] millisWidths = new int[widths.size()];
+        for (int w = 0; w < millisWidths.length; w++) {
+            millisWidths[w] = widths.get(w);
+        }
+        final char zeroDigit = ((DecimalFormat) numberFormat).getDecimalFormatSymbols().getZeroDigit();
+        return new TimestampFormatter(format, pieceFormats, millisWidths, zeroDigit);
+    }
+
+    /**
+     * Checks whether this formatter produces the same text as the format.
+     *
+     * @param format the format
+     *
+     * @return {@code true} if this formatter was created for the format
+     */
+    boolean mirrors(final DateFormat format) {
+        return this.format == format;
+    }
+
+    /**
+     * Appends the formatted timestamp.
+     *
+     * @param millis the timestamp in milliseconds since the epoch
+     * @param target the builder to append to
+     */
+    void format(final long millis, final StringBuilder target) {
+        long seconds = millis / MILLIS_PER_SECOND;
+        int remainder = (int) (millis % MILLIS_PER_SECOND);
+        if (remainder < 0) {
+            // Before the epoch the milliseconds count up from the previous second
+            seconds--;
+            remainder += MILLIS_PER_SECOND;
+        }
+        Second current = second;
+        if (current == null || current.seconds != seconds) {
+            current = formatSecond(seconds);
+            final Second previous = second;
+            // A thread formatting an older timestamp must not replace the current second
+            if (previous == null || previous.seconds < seconds) {
+                second = current;
+            }
+        }
+        final String[] pieces = current.pieces;
+        target.append(pieces[0]);
+        for (int i = 0; i < millisWidths.length; i++) {
+            appendMillis(target, remainder, millisWidths[i]);
+            target.append(pieces[i + 1]);
+        }
+    }
+
+    private Second formatSecond(final long seconds) {
+        final String[] pieces = new String[pieceFormats.length];
+        synchronized (this) {
+            date.setTime(seconds * MILLIS_PER_SECOND);
+            for (int i = 0; i < pieces.length; i++) {
+                pieces[i] = pieceFormats[i].format(date);
+            }
+        }
+        return new Second(seconds, pieces);
+    }
+
+    private void appendMillis(final StringBuilder target, final int millis, final int width) {
+        final int digits = millis < 10 ? 1 : millis < 100 ? 2 : 3;
+        for (int i = digits; i < width; i++) {
+            target.append(zeroDigit);
+        }
+        if (digits > 2) {
+            target.append((char) (zeroDigit + millis / 100));
+        }
+        if (digits > 1) {
+            target.append((char) (zeroDigit + millis / 10 % 10));
+        }
+        target.append((char) (zeroDigit + millis % 10));
+    }
+
+    /**
+     * The text of the pieces of the pattern for a second.
+     */
+    private static final class Second {
+        final long seconds;
+        final String[] pieces;
+
+        Second(final long seconds, final String[] pieces) {
+            this.seconds = seconds;
+            this.pieces = pieces;
+        }
+    }
+}
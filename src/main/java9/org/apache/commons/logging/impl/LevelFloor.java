@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * Holds the levels allowed by the JVM wide minimum level.
+ * <p>
+ * The allowed levels are published through a {@link MutableCallSite}. Once compiled the JIT treats the value as a
+ * constant, so a check for a level which is not allowed is removed along with the code it guards. Changing the
+ * minimum level deoptimizes the code which depends on the call site.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ * @see JBossLogFactory#setMinimumLevel(String)
+ */
+final class LevelFloor {
+    private static final MutableCallSite CALL_SITE = new MutableCallSite(
+            MethodHandles.constant(int.class, JBossLogFactory.readMinimumLevel()));
+    private static final MethodHandle ALLOWED_LEVELS = CALL_SITE.dynamicInvoker();
+
+    private LevelFloor() {
+    }
+
+    /**
+     * Checks if the level is allowed by the minimum level.
+     *
+     * @param level the {@link LogLevels} bit of the level
+     *
+     * @return {@code true} if the level is allowed
+     */
+    static boolean isAllowed(final int level) {
+        return (allowedLevels() & level) != 0;
+    }
+
+    /**
+     * Returns the bit mask of the levels allowed by the minimum level.
+     *
+     * @return the allowed levels
+     */
+    static int allowedLevels() {
+        try {
+            return (int) ALLOWED_LEVELS.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Sets the levels allowed.
+     *
+     * @param levels the bit mask of the allowed levels
+     */
+    static synchronized void setAllowedLevels(final int levels) {
+        CALL_SITE.setTarget(MethodHandles.constant(int.class, levels));
+        MutableCallSite.syncAll(new MutableCallSite[] {CALL_SITE});
+    }
+}
@@ -19,8 +19,14 @@
 
 package org.apache.commons.logging;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.impl.JBossLogFactory;
 import org.junit.Assert;
@@ -55,6 +61,84 @@ public class LogFactoryTest {
         logFactory.setAttribute("test3", "value3");
         Assert.assertTrue(Arrays.asList(logFactory.getAttributeNames()).containsAll(Arrays.asList("test1", "test2", "test3")));
         Assert.assertEquals("value3", logFactory.getAttribute("test3"));
+
+        // Changes to the returned names should not be reflected in the factory
+        final String[] names = logFactory.getAttributeNames();
+        names[0] = "changed";
+        Assert.assertFalse(Arrays.asList(logFactory.getAttributeNames()).contains("changed"));
+    }
+
+    @Test
+    public void testCache() {
+        final LogFactory logFactory = LogFactory.getFactory();
+        Assert.assertNotSame(LogFactory.getLog("cache"), LogFactory.getLog("cache"));
+        final Thread thread = Thread.currentThread();
+        final ClassLoader current = thread.getContextClassLoader();
+        final ClassLoader deployment = new URLClassLoader(new URL[0], current);
+        logFactory.setAttribute(JBossLogFactory.CACHE_PROPERTY, "true");
+        try {
+            final Log log = LogFactory.getLog("cache");
+            Assert.assertSame(log, LogFactory.getLog("cache"));
+            Assert.assertNotSame(log, LogFactory.getLog("other"));
+
+            final Log classLog = LogFactory.getLog(LogFactoryTest.class);
+            Assert.assertSame(classLog, LogFactory.getLog(LogFactoryTest.class));
+            Assert.assertSame(classLog, LogFactory.getLog(LogFactoryTest.class.getName()));
+
+            thread.setContextClassLoader(deployment);
+            final Log deploymentLog = LogFactory.getLog("cache");
+            Assert.assertNotSame(log, deploymentLog);
+            Assert.assertSame(deploymentLog, LogFactory.getLog("cache"));
+
+            // Only the logs for the deployment should be released
+            LogFactory.release(deployment);
+            Assert.assertNotSame(deploymentLog, LogFactory.getLog("cache"));
+            thread.setContextClassLoader(current);
+            Assert.assertSame(log, LogFactory.getLog("cache"));
+            Assert.assertSame(classLog, LogFactory.getLog(LogFactoryTest.class));
+
+            // Releasing the class loader of the type should result in a new log for the type
+            LogFactory.release(current);
+            Assert.assertNotSame(classLog, LogFactory.getLog(LogFactoryTest.class));
+        } finally {
+            thread.setContextClassLoader(current);
+            logFactory.removeAttribute(JBossLogFactory.CACHE_PROPERTY);
+        }
+        Assert.assertNotSame(LogFactory.getLog("cache"), LogFactory.getLog("cache"));
+    }
+
+    @Test
+    public void testWarmUp() {
+        final LogFactory logFactory = LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.CACHE_PROPERTY, "true");
+        try {
+            final List<Object> logs = new ArrayList<Object>();
+            for (int i = 0; i < 100; i++) {
+                logs.add("warmUp" + i);
+            }
+            logs.add(LogFactoryTest.class);
+            final WarmUpResult result = LogFactory.warmUp(logs);
+            Assert.assertEquals(101, result.getCount());
+            Assert.assertTrue(result.getThreads() > 0);
+            Assert.assertNotNull(result.getSlowestName());
+            Assert.assertTrue(result.getElapsedTime(TimeUnit.NANOSECONDS) >= result.getSlowestTime(TimeUnit.NANOSECONDS));
+
+            // The warmed up logs are the cached logs of the context class loader of this thread
+            final Log log = LogFactory.getLog("warmUp0");
+            Assert.assertSame(log, LogFactory.getLog("warmUp0"));
+            Assert.assertSame(LogFactory.getLog(LogFactoryTest.class), LogFactory.getLog(LogFactoryTest.class));
+
+            final WarmUpResult empty = LogFactory.warmUp(Collections.emptyList());
+            Assert.assertEquals(0, empty.getCount());
+            Assert.assertEquals(0, empty.getThreads());
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.CACHE_PROPERTY);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWarmUpInvalid() {
+        LogFactory.warmUp(Collections.singletonList(1));
     }
 
     @Test
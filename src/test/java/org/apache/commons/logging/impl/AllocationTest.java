@@ -0,0 +1,242 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the number of bytes allocated by the log methods once they have been warmed up.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class AllocationTest {
+    private static final int WARM_UP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 10000;
+    private static final int ATTEMPTS = 5;
+    // The bytes a single enabled SimpleLog call is allowed to allocate when write(StringBuffer) is overridden, which
+    // requires a new buffer for each message
+    private static final long SIMPLE_LOG_BYTES_PER_CALL = 256L;
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    private final String message = "Test message";
+    private final IllegalStateException cause = new IllegalStateException("Test cause");
+
+    @BeforeClass
+    public static void checkSupported() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Before
+    public void setLevel() {
+        Logger.getLogger("").setLevel(Level.INFO);
+    }
+
+    @Test
+    public void testJBossLogDisabled() {
+        final Log log = LogFactory.getLog(AllocationTest.class);
+        assertNoAllocation("JBossLog.debug(Object)", new Runnable() {
+            @Override
+            public void run() {
+                log.debug(message);
+            }
+        });
+        assertNoAllocation("JBossLog.trace(Object, Throwable)", new Runnable() {
+            @Override
+            public void run() {
+                log.trace(message, cause);
+            }
+        });
+        assertNoAllocation("JBossLog.is*Enabled()", new Runnable() {
+            @Override
+            public void run() {
+                if (log.isDebugEnabled() || log.isTraceEnabled() || !log.isInfoEnabled()) {
+                    throw new AssertionError();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSimpleLogDisabled() {
+        final Log log = new DiscardingSimpleLog();
+        assertNoAllocation("SimpleLog.debug(Object)", new Runnable() {
+            @Override
+            public void run() {
+                log.debug(message);
+            }
+        });
+        assertNoAllocation("SimpleLog.trace(Object, Throwable)", new Runnable() {
+            @Override
+            public void run() {
+                log.trace(message, cause);
+            }
+        });
+        assertNoAllocation("SimpleLog.is*Enabled()", new Runnable() {
+            @Override
+            public void run() {
+                if (log.isDebugEnabled() || log.isTraceEnabled() || !log.isInfoEnabled()) {
+                    throw new AssertionError();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testNoOpLog() {
+        final Log log = new NoOpLog();
+        assertNoAllocation("NoOpLog", new Runnable() {
+            @Override
+            public void run() {
+                log.info(message);
+                log.error(message, cause);
+                if (log.isInfoEnabled()) {
+                    throw new AssertionError();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSimpleLogEnabled() {
+        final DiscardingSimpleLog log = new DiscardingSimpleLog();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                log.info(message);
+            }
+        };
+        final long bytes = measure(task);
+        Assert.assertTrue(String.format("Expected at most %d bytes per call but SimpleLog.info(Object) allocated %d bytes per call",
+                SIMPLE_LOG_BYTES_PER_CALL, bytes / ITERATIONS), bytes <= SIMPLE_LOG_BYTES_PER_CALL * ITERATIONS);
+        Assert.assertTrue(log.length > 0);
+    }
+
+    @Test
+    public void testSimpleLogEnabledPrint() {
+        final PrintingSimpleLog log = new PrintingSimpleLog();
+        assertNoAllocation("SimpleLog.info(Object)", new Runnable() {
+            @Override
+            public void run() {
+                log.info(message);
+            }
+        });
+        Assert.assertTrue(log.stream.count > 0);
+    }
+
+    private static void assertNoAllocation(final String description, final Runnable task) {
+        final long bytes = measure(task);
+        // Less than one byte per call allows for the occasional allocation made by the VM itself on this thread
+        Assert.assertTrue(String.format("Expected no allocation but %s allocated %d bytes in %d calls", description, bytes, ITERATIONS),
+                bytes < ITERATIONS);
+    }
+
+    /**
+     * Returns the fewest bytes allocated by the task in the attempts, less the bytes allocated when measuring.
+     */
+    private static long measure(final Runnable task) {
+        final Runnable empty = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            task.run();
+            empty.run();
+        }
+        long result = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            result = Math.min(result, allocatedBytes(task) - allocatedBytes(empty));
+        }
+        return Math.max(0L, result);
+    }
+
+    private static long allocatedBytes(final Runnable task) {
+        final long threadId = Thread.currentThread().getId();
+        final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    private static class PrintingSimpleLog extends SimpleLog {
+        private static final long serialVersionUID = 1L;
+
+        final CountingOutputStream stream = new CountingOutputStream();
+        final PrintStream printStream = new PrintStream(stream);
+        final Charset charset = Charset.forName("UTF-8");
+
+        PrintingSimpleLog() {
+            super(AllocationTest.class.getName());
+        }
+
+        @Override
+        void print(final int type, final RenderBuffer renderBuffer) {
+            renderBuffer.writeTo(printStream, charset);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+
+    private static class DiscardingSimpleLog extends SimpleLog {
+        private static final long serialVersionUID = 1L;
+
+        int length;
+
+        DiscardingSimpleLog() {
+            super(AllocationTest.class.getName());
+        }
+
+        @Override
+        protected void write(final StringBuffer buffer) {
+            length = buffer.length();
+        }
+    }
+}
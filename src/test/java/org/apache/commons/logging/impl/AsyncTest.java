@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.ExtLogRecord;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests asynchronous logging.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class AsyncTest {
+
+    private final Logger rootLogger = Logger.getLogger("");
+
+    private CapturingHandler handler;
+
+    @Before
+    public void setup() {
+        handler = new CapturingHandler();
+        rootLogger.addHandler(handler);
+        rootLogger.setLevel(Level.ALL);
+    }
+
+    @After
+    public void tearDown() {
+        rootLogger.removeHandler(handler);
+        handler.close();
+    }
+
+    @Test
+    public void testAsync() {
+        final LogFactory logFactory = LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.ASYNC_PROPERTY, "true");
+        logFactory.setAttribute(JBossLogFactory.ASYNC_QUEUE_LENGTH_PROPERTY, "8");
+        final Log log = LogFactory.getLog(AsyncTest.class);
+        // Resolving the first delegate may log which provider is used, which is not a message from this test
+        log.isInfoEnabled();
+        handler.queue.clear();
+        final StringBuilder message = new StringBuilder("Test message");
+        final long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < 100; i++) {
+                log.info(message.append(i));
+                message.setLength(12);
+            }
+            rootLogger.setLevel(Level.INFO);
+            log.debug("Disabled message");
+        } finally {
+            // Disabling asynchronous logging should deliver the queued messages
+            logFactory.removeAttribute(JBossLogFactory.ASYNC_PROPERTY);
+            logFactory.removeAttribute(JBossLogFactory.ASYNC_QUEUE_LENGTH_PROPERTY);
+        }
+        final long end = System.currentTimeMillis();
+        Assert.assertEquals(100, handler.queue.size());
+        for (int i = 0; i < 100; i++) {
+            final ExtLogRecord record = handler.queue.poll();
+            Assert.assertEquals("Test message" + i, record.getMessage());
+            // The caller is not available rather than reported as the consumer thread
+            Assert.assertEquals("<unknown>", record.getSourceClassName());
+            Assert.assertEquals(Thread.currentThread().getName(), record.getMdc(JBossLogFactory.ASYNC_THREAD_KEY));
+            final long timestamp = Long.parseLong(record.getMdc(JBossLogFactory.ASYNC_TIMESTAMP_KEY));
+            Assert.assertTrue(timestamp >= start && timestamp <= end);
+        }
+    }
+
+    @Test
+    public void testAsyncMappedFileShutdown() throws Exception {
+        final File file = File.createTempFile("simplelog", ".log");
+        try {
+            // The queue is drained by the shutdown hooks, so the messages must be logged from a separate process
+            final int records = 50000;
+            final Process process = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    "-Dorg.apache.commons.logging.simplelog.async=true",
+                    "-Dorg.apache.commons.logging.simplelog.asyncQueueLength=" + (records * 2),
+                    "-Dorg.apache.commons.logging.simplelog.mappedFile=" + file.getPath(),
+                    AsyncMappedFileMain.class.getName(), Integer.toString(records))
+                    .redirectErrorStream(true)
+                    .start();
+            final String output = new String(TestFiles.readFully(process.getInputStream()), "UTF-8");
+            Assert.assertEquals(output, 0, process.waitFor());
+            final String[] lines = TestFiles.readFile(file).split("\n");
+            Assert.assertEquals(records, lines.length);
+            for (int i = 0; i < records; i++) {
+                Assert.assertTrue(lines[i], lines[i].endsWith(" - record " + i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testAsyncDiscardOldest() throws Exception {
+        final List<Integer> delivered = new CopyOnWriteArrayList<Integer>();
+        final AsyncDispatcher dispatcher = new AsyncDispatcher("test-async", 4, AsyncDispatcher.WaitStrategy.PARK,
+                AsyncDispatcher.OverflowPolicy.DISCARD_OLDEST, 5000L) {
+            @Override
+            void deliver(final Event event) {
+                try {
+                    Thread.sleep(1L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delivered.add((Integer) event.message);
+            }
+        };
+        final int events = 100;
+        try {
+            Assert.assertEquals(4, dispatcher.getQueueCapacity());
+            for (int i = 0; i < events; i++) {
+                Assert.assertTrue(dispatcher.dispatch(this, LogLevels.INFO, i, null, 0L, null));
+                Assert.assertTrue(dispatcher.getQueueDepth() <= dispatcher.getQueueCapacity());
+            }
+        } finally {
+            dispatcher.close();
+        }
+        Assert.assertEquals(0, dispatcher.getQueueDepth());
+        Assert.assertTrue(dispatcher.getDiscardedCount() > 0L);
+        Assert.assertEquals(events, delivered.size() + dispatcher.getDiscardedCount());
+        // The oldest messages are dropped so the newest is always delivered, and the order is kept
+        Assert.assertEquals(Integer.valueOf(events - 1), delivered.get(delivered.size() - 1));
+        for (int i = 1; i < delivered.size(); i++) {
+            Assert.assertTrue(delivered.get(i - 1) < delivered.get(i));
+        }
+    }
+
+    @Test
+    public void testAsyncCloseWhileLogging() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            final AtomicLong delivered = new AtomicLong();
+            final AtomicLong accepted = new AtomicLong();
+            final AsyncDispatcher dispatcher = new AsyncDispatcher("test-async", 16, AsyncDispatcher.WaitStrategy.YIELD,
+                    AsyncDispatcher.OverflowPolicy.BLOCK, 5000L) {
+                @Override
+                void deliver(final Event event) {
+                    delivered.incrementAndGet();
+                }
+            };
+            final Thread[] producers = new Thread[4];
+            for (int i = 0; i < producers.length; i++) {
+                producers[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Every accepted event must be delivered, however the dispatch and the close interleave
+                        while (dispatcher.dispatch(this, LogLevels.INFO, "message", null, 0L, null)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+                producers[i].start();
+            }
+            Thread.sleep(5L);
+            dispatcher.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            Assert.assertTrue(accepted.get() > 0L);
+            Assert.assertEquals(accepted.get(), delivered.get());
+        }
+    }
+
+    /**
+     * Logs the number of messages given as the argument and exits, leaving the shutdown hooks to write them.
+     */
+    public static class AsyncMappedFileMain {
+        public static void main(final String[] args) {
+            final SimpleLog log = new SimpleLog("test");
+            for (int i = 0, records = Integer.parseInt(args[0]); i < records; i++) {
+                log.info("record " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import org.jboss.logmanager.ExtHandler;
+import org.jboss.logmanager.ExtLogRecord;
+
+/**
+ * A handler which queues the records it receives for the tests to check.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class CapturingHandler extends ExtHandler {
+
+    final BlockingDeque<ExtLogRecord> queue;
+
+    CapturingHandler() {
+        queue = new LinkedBlockingDeque<ExtLogRecord>();
+    }
+
+    @Override
+    protected void doPublish(final ExtLogRecord record) {
+        // Ensures the caller is calculated for testing
+        record.copyAll();
+        queue.addLast(record);
+    }
+
+    @Override
+    public void close() {
+        try {
+            queue.clear();
+        } finally {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the coalescing of repeated messages.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class CoalesceTest {
+
+    private final Logger rootLogger = Logger.getLogger("");
+
+    private CapturingHandler handler;
+
+    @Before
+    public void setup() {
+        handler = new CapturingHandler();
+        rootLogger.addHandler(handler);
+        rootLogger.setLevel(Level.ALL);
+    }
+
+    @After
+    public void tearDown() {
+        rootLogger.removeHandler(handler);
+        handler.close();
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        final LogFactory logFactory = LogFactory.getFactory();
+        // A window long enough for the sweeping thread not to run during the test, the sweep is invoked directly
+        logFactory.setAttribute(JBossLogFactory.COALESCE_WINDOW_PROPERTY, "600000");
+        try {
+            final Log log = LogFactory.getLog(CoalesceTest.class);
+            handler.queue.clear();
+            final IllegalStateException cause = new IllegalStateException("cause");
+            for (int i = 0; i < 10; i++) {
+                log.error("Repeated message", cause);
+                log.error("Repeated message");
+                // Causes of the same type created at the same place are repeats, whatever their message
+                log.error("Repeated failure", new NullPointerException(i == 0 ? null : "npe " + i));
+            }
+            Assert.assertEquals(3, handler.queue.size());
+            Assert.assertSame(cause, handler.queue.poll().getThrown());
+            Assert.assertNull(handler.queue.poll().getThrown());
+            Assert.assertNull(handler.queue.poll().getThrown().getMessage());
+            // A cause of the same type created elsewhere is not a repeat, it replaces the entry and reports its repeats
+            log.error("Repeated failure", createNullPointerException());
+            Assert.assertEquals(2, handler.queue.size());
+            Assert.assertEquals("Message repeated 9 times: Repeated failure", handler.queue.poll().getMessage());
+            Assert.assertEquals("createNullPointerException", handler.queue.poll().getThrown().getStackTrace()[0].getMethodName());
+            // The repeats are reported once the window ends even though the messages are not logged again
+            final long windowEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(600000L);
+            ((JBossLogFactory) logFactory).coalescer().expire(windowEnd, false);
+            Assert.assertEquals(2, handler.queue.size());
+            final List<String> reported = new ArrayList<String>();
+            reported.add(handler.queue.poll().getMessage());
+            reported.add(handler.queue.poll().getMessage());
+            Assert.assertEquals(Collections.nCopies(2, "Message repeated 9 times: Repeated message"), reported);
+            // A later occurrence is logged without a count from the previous window
+            log.error("Repeated message", cause);
+            Assert.assertEquals(1, handler.queue.size());
+            Assert.assertSame(IllegalStateException.class, handler.queue.poll().getThrown().getClass());
+            // Repeats counted when the coalescer is replaced are reported straight away
+            log.error("Repeated message", cause);
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.COALESCE_WINDOW_PROPERTY);
+        }
+        Assert.assertEquals(1, handler.queue.size());
+        Assert.assertEquals("Message repeated 1 times: Repeated message", handler.queue.poll().getMessage());
+    }
+
+    private static NullPointerException createNullPointerException() {
+        return new NullPointerException();
+    }
+}
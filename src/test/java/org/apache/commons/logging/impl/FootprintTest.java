@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests the heap retained by each {@link JBossLog}.
+ * <p>
+ * The shallow size is calculated the way JOL does, from the field offsets reported by {@code sun.misc.Unsafe}. The
+ * retained size is measured by comparing the used heap before and after creating the logs.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class FootprintTest {
+    private static final int LOGGERS = 100000;
+    // The number of distinct names, the names are built at runtime so each log is handed its own copy
+    private static final int NAMES = 100;
+    // The bytes each live logger is allowed to retain, including the slot holding it in the test
+    private static final long BYTES_PER_LOGGER = 64L;
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    @Test
+    public void testShallowSize() throws Exception {
+        final Object unsafe = unsafe();
+        final Method arrayIndexScale = unsafe.getClass().getMethod("arrayIndexScale", Class.class);
+        final int referenceSize = (Integer) arrayIndexScale.invoke(unsafe, Object[].class);
+        final long size = shallowSize(unsafe, JBossLog.class);
+        // A 12 byte header, 4 references and the cached levels with compressed references, otherwise a 16 byte header
+        // and 8 byte references
+        final long expected = referenceSize == 4 ? 32L : 56L;
+        Assert.assertTrue(String.format("Expected a JBossLog to be at most %d bytes but was %d bytes", expected, size), size <= expected);
+    }
+
+    @Test
+    public void testNamesCanonical() {
+        final JBossLogFactory factory = new JBossLogFactory();
+        final String name = FootprintTest.class.getName();
+        final JBossLog first = (JBossLog) factory.getInstance(new String(name));
+        final JBossLog second = (JBossLog) factory.getInstance(new String(name));
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.name(), second.name());
+    }
+
+    @Test
+    public void testLatencyRecordersCollected() throws Exception {
+        final LatencyRecorders recorders = new LatencyRecorders();
+        final String retained = new String(FootprintTest.class.getName());
+        recorders.get(retained).set(0, new LatencyRecorder());
+        for (int i = 0; i < 1000; i++) {
+            // Names built at runtime which no log refers to once created
+            recorders.get(FootprintTest.class.getName() + ".logger" + i);
+        }
+        for (int i = 0; i < 50 && recorders.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(1, recorders.size());
+        Assert.assertNotNull(recorders.get(new String(retained)).get(0));
+        recorders.clear();
+        Assert.assertEquals(0, recorders.size());
+    }
+
+    @Test
+    public void testRetainedSize() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final JBossLogFactory factory = new JBossLogFactory();
+        final String prefix = FootprintTest.class.getName() + ".logger";
+        // Create the name before measuring as only the logs are counted
+        factory.getInstance(prefix + 0);
+        final JBossLog[] logs = new JBossLog[LOGGERS];
+        final long before = usedHeap(memory);
+        for (int i = 0; i < LOGGERS; i++) {
+            logs[i] = (JBossLog) factory.getInstance(prefix + (i % NAMES));
+        }
+        final long after = usedHeap(memory);
+        final double bytesPerLogger = (double) (after - before) / LOGGERS;
+        System.out.printf("%d loggers retained %d bytes, %.1f bytes per live logger%n", LOGGERS, after - before, bytesPerLogger);
+        Assert.assertTrue(String.format("Expected at most %d bytes per logger but %d loggers retained %.1f bytes per logger",
+                BYTES_PER_LOGGER, LOGGERS, bytesPerLogger), bytesPerLogger <= BYTES_PER_LOGGER);
+        Assert.assertSame(logs[0].name(), logs[NAMES].name());
+    }
+
+    private static long usedHeap(final MemoryMXBean memory) {
+        long used = Long.MAX_VALUE;
+        // Collect until the used heap settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static long shallowSize(final Object unsafe, final Class<?> type) throws Exception {
+        final Method objectFieldOffset = unsafe.getClass().getMethod("objectFieldOffset", Field.class);
+        long end = 0L;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    final long offset = (Long) objectFieldOffset.invoke(unsafe, field);
+                    end = Math.max(end, offset + fieldSize(unsafe, field.getType()));
+                }
+            }
+        }
+        return (end + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+
+    private static int fieldSize(final Object unsafe, final Class<?> type) throws Exception {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return (Integer) unsafe.getClass().getMethod("arrayIndexScale", Class.class).invoke(unsafe, Object[].class);
+    }
+
+    private static Object unsafe() {
+        try {
+            final Class<?> type = Class.forName("sun.misc.Unsafe");
+            final Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return field.get(null);
+        } catch (Throwable e) {
+            Assume.assumeNoException(e);
+            return null;
+        }
+    }
+}
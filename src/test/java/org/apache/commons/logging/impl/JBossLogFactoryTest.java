@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the configuration of the {@link JBossLogFactory} and the logs it creates.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class JBossLogFactoryTest {
+
+    private final Logger rootLogger = Logger.getLogger("");
+
+    private CapturingHandler handler;
+
+    @Before
+    public void setup() {
+        handler = new CapturingHandler();
+        rootLogger.addHandler(handler);
+        rootLogger.setLevel(Level.ALL);
+    }
+
+    @After
+    public void tearDown() {
+        rootLogger.removeHandler(handler);
+        handler.close();
+    }
+
+    @Test
+    public void testClassLogs() {
+        final JBossLogCache cache = new JBossLogCache((JBossLogFactory) LogFactory.getFactory());
+        final ClassLogs classLogs = new ClassLogs(cache);
+        final ClassLogs.Entry entry = classLogs.get(JBossLogFactoryTest.class);
+        Assert.assertSame(entry.log, classLogs.getLog(JBossLogFactoryTest.class));
+        // Removing the logs of another class loader leaves the association as it is
+        cache.remove(new URLClassLoader(new URL[0], JBossLogFactoryTest.class.getClassLoader()));
+        cache.remove(null);
+        Assert.assertSame(entry.log, classLogs.getLog(JBossLogFactoryTest.class));
+        Assert.assertSame(entry, classLogs.get(JBossLogFactoryTest.class));
+        // Removing the logs of the class loader of the type replaces the association
+        cache.remove(JBossLogFactoryTest.class.getClassLoader());
+        final JBossLog log = classLogs.getLog(JBossLogFactoryTest.class);
+        Assert.assertNotSame(entry.log, log);
+        Assert.assertSame(log, cache.getLog(JBossLogFactoryTest.class.getClassLoader(), JBossLogFactoryTest.class.getName()));
+        cache.clear();
+        Assert.assertNotSame(log, classLogs.getLog(JBossLogFactoryTest.class));
+    }
+
+    @Test
+    public void testLevelCache() {
+        final JBossLogFactory logFactory = (JBossLogFactory) LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.LEVEL_CACHE_PROPERTY, "true");
+        try {
+            rootLogger.setLevel(Level.INFO);
+            final Log log = LogFactory.getLog(JBossLogFactoryTest.class);
+            Assert.assertTrue(log.isInfoEnabled());
+            Assert.assertFalse(log.isDebugEnabled());
+            Assert.assertEquals(LogLevels.INFO | LogLevels.WARN | LogLevels.ERROR | LogLevels.FATAL,
+                    LogLevels.enabledLevels(log));
+
+            // The cached levels should be used until the factory is notified of the change
+            rootLogger.setLevel(Level.TRACE);
+            Assert.assertFalse(log.isDebugEnabled());
+            logFactory.levelsChanged();
+            Assert.assertTrue(log.isDebugEnabled());
+            Assert.assertTrue(log.isTraceEnabled());
+            Assert.assertEquals(LogLevels.ALL, LogLevels.enabledLevels(log));
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.LEVEL_CACHE_PROPERTY);
+        }
+        rootLogger.setLevel(Level.ERROR);
+        Assert.assertFalse(LogFactory.getLog(JBossLogFactoryTest.class).isWarnEnabled());
+    }
+
+    @Test
+    public void testMinimumLevel() {
+        final Log log = LogFactory.getLog(JBossLogFactoryTest.class);
+        // Creating the first log may result in the logging provider being logged
+        handler.queue.clear();
+        JBossLogFactory.setMinimumLevel("info");
+        try {
+            Assert.assertFalse(log.isDebugEnabled());
+            Assert.assertFalse(log.isTraceEnabled());
+            Assert.assertTrue(log.isInfoEnabled());
+            Assert.assertEquals(LogLevels.INFO | LogLevels.WARN | LogLevels.ERROR | LogLevels.FATAL,
+                    LogLevels.enabledLevels(log));
+            log.debug("Test message");
+            log.trace("Test message");
+            Assert.assertTrue(handler.queue.isEmpty());
+            log.info("Test message");
+            Assert.assertEquals(1, handler.queue.size());
+        } finally {
+            JBossLogFactory.setMinimumLevel(null);
+        }
+        Assert.assertTrue(log.isTraceEnabled());
+    }
+
+    @Test
+    public void testNamePool() {
+        final NamePool pool = new NamePool();
+        final String name = JBossLogFactoryTest.class.getName();
+        final String canonical = pool.intern(new String(name));
+        Assert.assertSame(canonical, pool.intern(name));
+        Assert.assertSame(canonical, pool.intern(new String(name)));
+        Assert.assertEquals(name, canonical);
+        final String other = pool.intern(name + ".other");
+        Assert.assertNotSame(canonical, other);
+        Assert.assertSame(other, pool.intern(new String(name + ".other")));
+        Assert.assertEquals(2, pool.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMinimumLevel() {
+        JBossLogFactory.setMinimumLevel("invalid");
+    }
+
+    @Test
+    public void testProvider() {
+        final LogFactory logFactory = LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.PROVIDER_PROPERTY, "jdk");
+        try {
+            rootLogger.setLevel(Level.INFO);
+            final JBossLog log = (JBossLog) LogFactory.getLog(JBossLogFactoryTest.class.getName() + ".jdk");
+            Assert.assertEquals("org.jboss.logging.JDKLogger", log.delegate().getClass().getName());
+            handler.queue.clear();
+            log.info("Test message");
+            Assert.assertEquals("Test message", handler.queue.poll().getMessage());
+
+            // An invalid provider falls back to the default provider
+            logFactory.setAttribute(JBossLogFactory.PROVIDER_PROPERTY, "invalid");
+            final JBossLog fallback = (JBossLog) LogFactory.getLog(JBossLogFactoryTest.class.getName() + ".invalid");
+            Assert.assertEquals(org.jboss.logging.Logger.getLogger(JBossLogFactoryTest.class.getName()).getClass(), fallback.delegate().getClass());
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.PROVIDER_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests writing log records to files.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogFileTest {
+
+    @Test
+    public void testLogWriter() throws Exception {
+        final File file = File.createTempFile("simplelog", ".log");
+        file.deleteOnExit();
+        final Charset charset = Charset.forName("UTF-8");
+        final FileChannel channel = new FileOutputStream(file).getChannel();
+        final LogWriter writer = new LogWriter("test-writer", channel, true, charset, 64,
+                LogWriter.Policy.parse("records:3, error"));
+        try {
+            writer.write(charset.encode("one\n"), false);
+            writer.write(charset.encode("two\n"), false);
+            Assert.assertEquals(0L, file.length());
+            writer.write(charset.encode("three\n"), false);
+            Assert.assertEquals("one\ntwo\nthree\n", TestFiles.readFile(file));
+            writer.write(charset.encode("four\n"), false);
+            writer.write(charset.encode("error\n"), true);
+            Assert.assertEquals("one\ntwo\nthree\nfour\nerror\n", TestFiles.readFile(file));
+            // Larger than the buffer, the buffered record must be written first
+            writer.write(charset.encode("five\n"), false);
+            final StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                large.append("large");
+            }
+            large.append('\n');
+            writer.write(charset.encode(large.toString()), false);
+            Assert.assertEquals("one\ntwo\nthree\nfour\nerror\nfive\n" + large, TestFiles.readFile(file));
+            writer.write(charset.encode("six\n"), false);
+            writer.flush();
+            Assert.assertEquals("one\ntwo\nthree\nfour\nerror\nfive\n" + large + "six\n", TestFiles.readFile(file));
+        } finally {
+            writer.close();
+        }
+        Assert.assertFalse(channel.isOpen());
+
+        // Concurrent writers, each record must be written whole and exactly once
+        final File concurrentFile = File.createTempFile("simplelog", ".log");
+        concurrentFile.deleteOnExit();
+        final LogWriter concurrentWriter = new LogWriter("test-writer", new FileOutputStream(concurrentFile).getChannel(), true,
+                charset, 256, LogWriter.Policy.parse("interval:5"));
+        final int threads = 4;
+        final int records = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < records; i++) {
+                            concurrentWriter.write(charset.encode("record " + thread + " " + i + "\n"), false);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            concurrentWriter.close();
+        }
+        final Set<String> lines = new HashSet<String>(Arrays.asList(TestFiles.readFile(concurrentFile).split("\n")));
+        Assert.assertEquals(threads * records, lines.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < records; i++) {
+                Assert.assertTrue(lines.contains("record " + t + " " + i));
+            }
+        }
+
+        // Writers racing the close, the records written before it are whole and nothing is written after it
+        final File closingFile = File.createTempFile("simplelog", ".log");
+        closingFile.deleteOnExit();
+        final LogWriter closingWriter = new LogWriter("test-writer", new FileOutputStream(closingFile).getChannel(), true,
+                charset, 256, LogWriter.Policy.parse("records:4"));
+        final ExecutorService closingExecutor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch started = new CountDownLatch(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(closingExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        for (int i = 0; i < records * 10; i++) {
+                            closingWriter.write(charset.encode("record " + thread + " " + i + "\n"), false);
+                        }
+                    }
+                }));
+            }
+            started.await();
+            closingWriter.close();
+            final long length = closingFile.length();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assert.assertEquals(length, closingFile.length());
+        } finally {
+            closingExecutor.shutdown();
+        }
+        final String closingContent = TestFiles.readFile(closingFile);
+        Assert.assertTrue(closingContent.isEmpty() || closingContent.endsWith("\n"));
+        for (String line : closingContent.split("\n")) {
+            Assert.assertTrue(line, line.isEmpty() || line.matches("record \\d \\d+"));
+        }
+    }
+
+    @Test
+    public void testMappedLogFile() throws Exception {
+        final File dir = File.createTempFile("simplelog", "");
+        Assert.assertTrue(dir.delete() && dir.mkdir());
+        final File file = new File(dir, "mapped.log");
+        final Charset charset = Charset.forName("UTF-8");
+        try {
+            // A small region and maximum size so records span regions and the file is rolled
+            final MappedLogFile mapped = MappedLogFile.open(file, charset, 16, 100, 0L, false, 0);
+            final StringBuilder expected = new StringBuilder();
+            try {
+                for (int i = 0; i < 50; i++) {
+                    final String record = "record " + i + "\n";
+                    expected.append(record);
+                    mapped.write(charset.encode(record), false);
+                    // Rolled on the background thread, wait so the next file is ready for the next roll
+                    Assert.assertTrue(mapped.awaitRotation(10000L));
+                }
+                Assert.assertEquals(0L, mapped.getDeferredRotationCount());
+            } finally {
+                mapped.close();
+            }
+            final File[] files = dir.listFiles();
+            Assert.assertTrue(files.length > 1);
+            Assert.assertEquals(files.length - 1, mapped.getRotationCount());
+            // The rolled names sort by the time they were rolled, the current file is last
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(final File o1, final File o2) {
+                    return o1.equals(file) ? 1 : o2.equals(file) ? -1 : o1.getName().compareTo(o2.getName());
+                }
+            });
+            final StringBuilder actual = new StringBuilder();
+            for (File f : files) {
+                Assert.assertTrue(f.getName(), f.length() <= 100);
+                final String text = TestFiles.readFile(f);
+                // No unused tail is left after the file is closed or rolled
+                Assert.assertTrue(f.getName(), text.endsWith("\n"));
+                actual.append(text);
+            }
+            Assert.assertEquals(expected.toString(), actual.toString());
+            for (File f : files) {
+                Assert.assertTrue(f.delete());
+            }
+
+            // The unused tail left by a process which did not close the file is removed when it is opened
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write("abc\n".getBytes(charset));
+                out.write(new byte[64]);
+            } finally {
+                out.close();
+            }
+            final MappedLogFile restarted = MappedLogFile.open(file, charset, 16, 0L, 0L, false, 0);
+            try {
+                Assert.assertEquals(4L, file.length() - TestFiles.countTrailingZeros(file));
+                restarted.write(charset.encode("def\n"), false);
+                // Visible to readers before the file is closed
+                Assert.assertTrue(TestFiles.readFile(file).startsWith("abc\ndef\n"));
+            } finally {
+                restarted.close();
+            }
+            Assert.assertEquals("abc\ndef\n", TestFiles.readFile(file));
+            Assert.assertTrue(file.delete());
+
+            // Rolled by time
+            final MappedLogFile timed = MappedLogFile.open(file, charset, 16, 0L, 50L, false, 0);
+            try {
+                timed.write(charset.encode("first\n"), false);
+                Thread.sleep(100L);
+                timed.write(charset.encode("second\n"), false);
+            } finally {
+                timed.close();
+            }
+            // Closing waits for the rotation in progress and removes the next file
+            Assert.assertEquals("second\n", TestFiles.readFile(file));
+            Assert.assertEquals(2, dir.listFiles().length);
+            for (File f : dir.listFiles()) {
+                Assert.assertTrue(f.delete());
+            }
+
+            // A process which ended after swapping to the next file but before renaming it
+            TestFiles.writeFile(file, "old\n");
+            TestFiles.writeFile(new File(dir, "mapped.log.next"), "new\n\0\0\0\0");
+            final MappedLogFile recovered = MappedLogFile.open(file, charset, 16, 0L, 0L, false, 0);
+            recovered.close();
+            Assert.assertEquals("new\n", TestFiles.readFile(file));
+            Assert.assertEquals(2, dir.listFiles().length);
+            for (File f : dir.listFiles()) {
+                if (!f.equals(file)) {
+                    Assert.assertEquals("old\n", TestFiles.readFile(f));
+                }
+                Assert.assertTrue(f.delete());
+            }
+
+            // Rolled files are compressed and only the latest are retained, other files sharing the prefix are kept
+            final File backup = new File(dir, "mapped.log.bak");
+            final File old = new File(dir, "mapped.log.old");
+            TestFiles.writeFile(backup, "backup\n");
+            TestFiles.writeFile(old, "old\n");
+            final MappedLogFile compressed = MappedLogFile.open(file, charset, 64, 100, 0L, true, 2);
+            final List<String> records = new ArrayList<String>();
+            try {
+                for (int i = 0; i < 50; i++) {
+                    final String record = "record " + i + "\n";
+                    records.add(record);
+                    compressed.write(charset.encode(record), false);
+                    Assert.assertTrue(compressed.awaitRotation(10000L));
+                }
+            } finally {
+                compressed.close();
+            }
+            Assert.assertEquals("backup\n", TestFiles.readFile(backup));
+            Assert.assertEquals("old\n", TestFiles.readFile(old));
+            Assert.assertTrue(backup.delete() && old.delete());
+            final File[] compressedFiles = dir.listFiles();
+            Assert.assertEquals(3, compressedFiles.length);
+            final StringBuilder retained = new StringBuilder();
+            Arrays.sort(compressedFiles);
+            for (File f : compressedFiles) {
+                if (!f.equals(file)) {
+                    Assert.assertTrue(f.getName(), f.getName().endsWith(".gz"));
+                    retained.append(TestFiles.gunzip(f));
+                }
+            }
+            retained.append(TestFiles.readFile(file));
+            final StringBuilder latest = new StringBuilder();
+            for (int i = records.size() - 1; latest.length() < retained.length(); i--) {
+                latest.insert(0, records.get(i));
+            }
+            Assert.assertEquals(latest.toString(), retained.toString());
+            final RotationStatisticsMXBean statistics = compressed;
+            Assert.assertTrue(statistics.getRotationCount() > 2);
+            Assert.assertEquals(statistics.getRotationCount() - 2, statistics.getRemovedFileCount());
+            Assert.assertTrue(statistics.getUncompressedBytes() > 0L);
+            Assert.assertTrue(statistics.getCompressedBytes() > 0L);
+            Assert.assertTrue(statistics.getTotalRotationTimeMillis() >= statistics.getLastRotationTimeMillis());
+        } finally {
+            final File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testMappedLogFileCharset() throws Exception {
+        Assert.assertTrue(MappedLogFile.isSupported(Charset.forName("UTF-8")));
+        Assert.assertTrue(MappedLogFile.isSupported(Charset.forName("ISO-8859-1")));
+        Assert.assertTrue(MappedLogFile.isSupported(Charset.forName("US-ASCII")));
+        // Records would end in zero bytes which cannot be told apart from the unused tail
+        Assert.assertFalse(MappedLogFile.isSupported(Charset.forName("UTF-16LE")));
+        Assert.assertFalse(MappedLogFile.isSupported(Charset.forName("UTF-16")));
+        final File file = File.createTempFile("simplelog", ".log");
+        try {
+            MappedLogFile.open(file, Charset.forName("UTF-16LE"), 16, 0L, 0L, false, 0);
+            Assert.fail("Expected the charset to be rejected");
+        } catch (IllegalArgumentException expected) {
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testMappedLogFileRenameFailure() throws Exception {
+        final File dir = File.createTempFile("simplelog", "");
+        Assert.assertTrue(dir.delete() && dir.mkdir());
+        final File file = new File(dir, "mapped.log");
+        final File nextFile = new File(dir, "mapped.log.next");
+        final Charset charset = Charset.forName("UTF-8");
+        try {
+            final MappedLogFile mapped = MappedLogFile.open(file, charset, 16, 100, 0L, false, 0);
+            final String rolled = String.format("%99s\n", "rolled");
+            final StringBuilder expected = new StringBuilder(rolled);
+            try {
+                mapped.write(charset.encode("first\n"), false);
+                // Renaming the file once it is rolled fails as it no longer exists
+                Assert.assertTrue(file.delete());
+                mapped.write(charset.encode(rolled), false);
+                // The next file is not prepared again while the active segment is still the next file
+                Assert.assertFalse(mapped.awaitRotation(1500L));
+                Assert.assertFalse(file.exists());
+                // Records span many pages, which fault if the next file was truncated underneath its mapping
+                for (int i = 0; i < 1000; i++) {
+                    final String record = "record " + i + "\n";
+                    expected.append(record);
+                    mapped.write(charset.encode(record), false);
+                }
+                Assert.assertTrue(mapped.getDeferredRotationCount() > 0L);
+                // The renames are retried once the rolled file can be renamed
+                TestFiles.writeFile(file, "recreated\n");
+                Assert.assertTrue(mapped.awaitRotation(10000L));
+            } finally {
+                mapped.close();
+            }
+            Assert.assertFalse(nextFile.exists());
+            Assert.assertEquals(expected.toString(), TestFiles.readFile(file));
+            final File[] files = dir.listFiles();
+            Assert.assertEquals(2, files.length);
+            for (File f : files) {
+                if (!f.equals(file)) {
+                    Assert.assertEquals("recreated\n", TestFiles.readFile(f));
+                }
+            }
+        } finally {
+            final File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+}
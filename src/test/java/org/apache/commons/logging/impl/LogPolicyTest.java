@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.ExtLogRecord;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the rate limits and sampling configured for logs.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogPolicyTest {
+
+    private final Logger rootLogger = Logger.getLogger("");
+
+    private CapturingHandler handler;
+
+    @Before
+    public void setup() {
+        handler = new CapturingHandler();
+        rootLogger.addHandler(handler);
+        rootLogger.setLevel(Level.ALL);
+    }
+
+    @After
+    public void tearDown() {
+        rootLogger.removeHandler(handler);
+        handler.close();
+    }
+
+    @Test
+    public void testRateLimit() {
+        final LogFactory logFactory = LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.RATE_LIMIT_PROPERTY, LogPolicyTest.class.getName() + ":warn=5/60");
+        try {
+            final Log log = LogFactory.getLog(LogPolicyTest.class);
+            handler.queue.clear();
+            for (int i = 0; i < 20; i++) {
+                log.warn("Limited message");
+                log.info("Unlimited message");
+            }
+            // Other loggers are not limited
+            final Log other = LogFactory.getLog(LogPolicyTest.class.getName() + "Other");
+            for (int i = 0; i < 20; i++) {
+                other.warn("Other message");
+            }
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.RATE_LIMIT_PROPERTY);
+        }
+        int limited = 0;
+        int unlimited = 0;
+        int other = 0;
+        ExtLogRecord record;
+        while ((record = handler.queue.poll()) != null) {
+            if ("Limited message".equals(record.getMessage())) {
+                limited++;
+            } else if ("Unlimited message".equals(record.getMessage())) {
+                unlimited++;
+            } else if ("Other message".equals(record.getMessage())) {
+                other++;
+            }
+        }
+        Assert.assertEquals(5, limited);
+        Assert.assertEquals(20, unlimited);
+        Assert.assertEquals(20, other);
+    }
+
+    @Test
+    public void testRateLimitSummary() throws Exception {
+        final JBossLogFactory logFactory = (JBossLogFactory) LogFactory.getFactory();
+        // A period long enough for the sweeping thread not to run during the test, the sweep is invoked directly
+        logFactory.setAttribute(JBossLogFactory.RATE_LIMIT_PROPERTY, LogPolicyTest.class.getName() + ":warn=5/600");
+        try {
+            final Log log = LogFactory.getLog(LogPolicyTest.class);
+            handler.queue.clear();
+            for (int i = 0; i < 20; i++) {
+                log.warn("Limited message");
+            }
+            Assert.assertEquals(5, handler.queue.size());
+            handler.queue.clear();
+            // The summary is logged once the period ends even though no further message is logged
+            logFactory.policies().expire(System.nanoTime() + TimeUnit.SECONDS.toNanos(600L), false);
+            Assert.assertEquals(1, handler.queue.size());
+            final ExtLogRecord summary = handler.queue.poll();
+            Assert.assertEquals("15 messages were suppressed by the rate limit of 5 messages every 600 seconds.", summary.getMessage());
+            Assert.assertEquals(Level.WARN, summary.getLevel());
+            Assert.assertEquals(LogPolicyTest.class.getName(), summary.getLoggerName());
+            // Nothing more to report for the period
+            logFactory.policies().expire(System.nanoTime() + TimeUnit.SECONDS.toNanos(600L), false);
+            Assert.assertTrue(handler.queue.isEmpty());
+
+            // Suppressed messages counted when the rate limits are replaced are reported straight away, the new period
+            // allows 5 of these
+            for (int i = 0; i < 10; i++) {
+                log.warn("Limited message");
+            }
+            handler.queue.clear();
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.RATE_LIMIT_PROPERTY);
+        }
+        Assert.assertEquals(1, handler.queue.size());
+        Assert.assertEquals("5 messages were suppressed by the rate limit of 5 messages every 600 seconds.", handler.queue.poll().getMessage());
+    }
+
+    @Test
+    public void testSampling() {
+        final JBossLogFactory logFactory = (JBossLogFactory) LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.SAMPLE_RATE_PROPERTY, LogPolicyTest.class.getName() + ":debug=1/10");
+        try {
+            rootLogger.setLevel(Level.TRACE);
+            final Log log = LogFactory.getLog(LogPolicyTest.class);
+            handler.queue.clear();
+            final long sampled = logFactory.getSampledCount();
+            final long dropped = logFactory.getSampleDroppedCount();
+            int enabled = 0;
+            for (int i = 0; i < 1000; i++) {
+                // A message guarded by a check which passed must always be logged
+                if (log.isDebugEnabled()) {
+                    enabled++;
+                    log.debug("Sampled message");
+                }
+                log.trace("Trace message");
+            }
+            Assert.assertEquals(1000 + enabled, handler.queue.size());
+            Assert.assertTrue("Expected about 100 sampled messages but found " + enabled, enabled > 20 && enabled < 300);
+            Assert.assertEquals(enabled, logFactory.getSampledCount() - sampled);
+            Assert.assertEquals(1000 - enabled, logFactory.getSampleDroppedCount() - dropped);
+
+            // Other levels are not sampled
+            Assert.assertTrue(log.isInfoEnabled());
+            logFactory.setAttribute(JBossLogFactory.SAMPLE_RATE_PROPERTY, "*=0/1");
+            Assert.assertFalse(log.isDebugEnabled());
+            Assert.assertFalse(log.isTraceEnabled());
+            Assert.assertTrue(log.isInfoEnabled());
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.SAMPLE_RATE_PROPERTY);
+        }
+
+        // A grant is cleared by the next sampling decision whether or not it was used
+        final Sampler sampler = Sampler.current();
+        final Object first = new Object();
+        sampler.grant(first, LogLevels.DEBUG);
+        Assert.assertFalse(sampler.consume(new Object(), LogLevels.DEBUG));
+        Assert.assertFalse(sampler.consume(first, LogLevels.DEBUG));
+        sampler.grant(first, LogLevels.DEBUG);
+        Assert.assertFalse(sampler.consume(first, LogLevels.TRACE));
+        Assert.assertFalse(sampler.consume(first, LogLevels.DEBUG));
+        sampler.grant(first, LogLevels.DEBUG);
+        Assert.assertTrue(sampler.consume(first, LogLevels.DEBUG));
+        Assert.assertFalse(sampler.consume(first, LogLevels.DEBUG));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the serialization of logs.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class SerializationTest {
+
+    @Test
+    public void testSerialization() throws Exception {
+        final LogFactory logFactory = LogFactory.getFactory();
+        logFactory.setAttribute(JBossLogFactory.CACHE_PROPERTY, "true");
+        try {
+            final Log log = LogFactory.getLog(SerializationTest.class.getName());
+            Assert.assertSame(log, deserialize(serialize(log)));
+
+            // Equal names should only be written once, logs are created with the canonical instance of their name
+            final List<Log> logs = new ArrayList<Log>();
+            for (int i = 0; i < 100; i++) {
+                final String name = ((JBossLogFactory) logFactory).canonicalName(new String(SerializationTest.class.getName()));
+                logs.add(new JBossLog((JBossLogFactory) logFactory, name));
+            }
+            final byte[] data = serialize(logs);
+            Assert.assertTrue("Expected at most 20 bytes per log but was " + data.length / logs.size(), data.length < 20 * logs.size());
+            Assert.assertEquals(Collections.nCopies(logs.size(), log), deserialize(data));
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.CACHE_PROPERTY);
+        }
+
+        final SimpleLog simpleLog = new SimpleLog(SerializationTest.class.getName());
+        simpleLog.setLevel(SimpleLog.LOG_LEVEL_ERROR);
+        final SimpleLog copy = (SimpleLog) deserialize(serialize(simpleLog));
+        Assert.assertEquals(SerializationTest.class.getName(), copy.logName);
+        Assert.assertEquals(SimpleLog.LOG_LEVEL_ERROR, copy.getLevel());
+        // Levels outside the range of a byte must survive as well
+        simpleLog.setLevel(1000);
+        Assert.assertEquals(1000, ((SimpleLog) deserialize(serialize(simpleLog))).getLevel());
+
+        // Equal names of simple logs are only written once as well, even though each log has its own copy
+        final List<SimpleLog> simpleLogs = new ArrayList<SimpleLog>();
+        for (int i = 0; i < 100; i++) {
+            simpleLogs.add(new SimpleLog(new String(SerializationTest.class.getName())));
+        }
+        final byte[] simpleData = serialize(simpleLogs);
+        Assert.assertTrue("Expected at most 30 bytes per log but was " + simpleData.length / simpleLogs.size(),
+                simpleData.length < 30 * simpleLogs.size());
+
+        // Subclasses are serialized with their fields and must still have their write(StringBuffer) invoked
+        final CapturingSimpleLog capturing = (CapturingSimpleLog) deserialize(serialize(new CapturingSimpleLog("capturing")));
+        capturing.error("After deserialization");
+        Assert.assertTrue(capturing.written.toString(), capturing.written.toString().contains("After deserialization"));
+    }
+
+    private static byte[] serialize(final Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] data) throws Exception {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class CapturingSimpleLog extends SimpleLog {
+        private static final long serialVersionUID = 1L;
+
+        final StringBuffer written = new StringBuffer();
+
+        CapturingSimpleLog(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final StringBuffer buffer) {
+            written.append(buffer);
+        }
+    }
+}
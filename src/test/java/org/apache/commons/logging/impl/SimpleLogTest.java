@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the levels and the rendering of the {@link SimpleLog}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class SimpleLogTest {
+
+    @Test
+    public void testSimpleLogLevels() {
+        final SimpleLog log = new SimpleLog(SimpleLogTest.class.getName());
+        log.setLevel(SimpleLog.LOG_LEVEL_WARN);
+        Assert.assertEquals(LogLevels.WARN | LogLevels.ERROR | LogLevels.FATAL, LogLevels.enabledLevels(log));
+        log.setLevel(SimpleLog.LOG_LEVEL_ALL);
+        Assert.assertEquals(LogLevels.ALL, LogLevels.enabledLevels(log));
+        log.setLevel(SimpleLog.LOG_LEVEL_OFF);
+        Assert.assertEquals(0, LogLevels.enabledLevels(log));
+    }
+
+    @Test
+    public void testSimpleLogConfiguredLevels() {
+        final String prefix = "org.apache.commons.logging.simplelog.log.";
+        System.setProperty(prefix + "org.example", "warn");
+        System.setProperty(prefix + "org.example.service", "debug");
+        System.setProperty(prefix + "org.example.service.Worker", "invalid");
+        try {
+            // Not visible until the levels are reloaded
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_INFO, new SimpleLog("org.example.Type").getLevel());
+            SimpleLog.reloadLevels();
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_WARN, new SimpleLog("org.example").getLevel());
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_WARN, new SimpleLog("org.example.Type").getLevel());
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_WARN, new SimpleLog("org.example.serviceType").getLevel());
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_DEBUG, new SimpleLog("org.example.service").getLevel());
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_DEBUG, new SimpleLog("org.example.service.impl.Type").getLevel());
+            // The most specific name wins even if the level is invalid
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_INFO, new SimpleLog("org.example.service.Worker").getLevel());
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_INFO, new SimpleLog("org.other").getLevel());
+            Assert.assertEquals(SimpleLog.LOG_LEVEL_INFO, new SimpleLog("org").getLevel());
+        } finally {
+            System.clearProperty(prefix + "org.example");
+            System.clearProperty(prefix + "org.example.service");
+            System.clearProperty(prefix + "org.example.service.Worker");
+            SimpleLog.reloadLevels();
+        }
+        Assert.assertEquals(SimpleLog.LOG_LEVEL_INFO, new SimpleLog("org.example.Type").getLevel());
+    }
+
+    @Test
+    public void testSimpleLogRendering() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PrintStream stream = new PrintStream(out, true, "UTF-8");
+        final SimpleLog log = new SimpleLog("org.example.Type") {
+            @Override
+            void print(final int type, final RenderBuffer renderBuffer) {
+                renderBuffer.writeTo(stream, Charset.forName("UTF-8"));
+            }
+        };
+        final IllegalStateException cause = new IllegalStateException("Test cause");
+        log.info("Test message \u00e9");
+        log.warn("Test warning", cause);
+
+        final StringWriter stackTrace = new StringWriter();
+        cause.printStackTrace(new PrintWriter(stackTrace));
+        final String lineSeparator = System.getProperty("line.separator");
+        Assert.assertEquals("[INFO] Type - Test message \u00e9" + lineSeparator +
+                "[WARN] Type - Test warning <" + cause + ">" + stackTrace + lineSeparator, out.toString("UTF-8"));
+
+        // The buffer passed to write(StringBuffer) holds the same text, without the line separator
+        final StringBuilder written = new StringBuilder();
+        final SimpleLog legacy = new SimpleLog("org.example.Type") {
+            @Override
+            protected void write(final StringBuffer buffer) {
+                written.append(buffer).append('|');
+            }
+        };
+        legacy.info("Test message");
+        legacy.error("Test error", cause);
+        Assert.assertEquals("[INFO] Type - Test message|[ERROR] Type - Test error <" + cause + ">" + stackTrace + "|", written.toString());
+    }
+
+    @Test
+    public void testRenderBufferRetainedCapacity() {
+        final Charset charset = Charset.forName("UTF-8");
+        RenderBuffer buffer = RenderBuffer.acquire();
+        final StringBuilder builder = buffer.builder();
+        for (int i = 0; i < RenderBuffer.MAX_RETAINED_CAPACITY; i++) {
+            builder.append("\u20ac");
+        }
+        Assert.assertTrue(buffer.encode(charset).capacity() > RenderBuffer.MAX_RETAINED_CAPACITY);
+        buffer.release();
+        // The buffers which grew past the cap are dropped once released
+        buffer = RenderBuffer.acquire();
+        try {
+            Assert.assertTrue(buffer.builder().capacity() <= RenderBuffer.MAX_RETAINED_CAPACITY);
+            buffer.builder().append("Test message");
+            Assert.assertTrue(buffer.encode(charset).capacity() <= RenderBuffer.MAX_RETAINED_BYTES);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testTimestampFormatter() {
+        final String[] patterns = {
+                SimpleLog.DEFAULT_DATE_TIME_FORMAT,
+                "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
+                "HH:mm:ss",
+                "S ss SSSSS",
+                "'Sec' ss 'and ''S''' SS",
+                "EEE, d MMM yyyy hh:mm:ss a z",
+        };
+        final Locale[] locales = {
+                Locale.US,
+                Locale.FRANCE,
+                new Locale("th", "TH", "TH"),
+        };
+        final Random random = new Random(17L);
+        for (String pattern : patterns) {
+            for (Locale locale : locales) {
+                final SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+                format.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+                final TimestampFormatter formatter = TimestampFormatter.create(format);
+                Assert.assertNotNull(formatter);
+                final SimpleDateFormat expected = (SimpleDateFormat) format.clone();
+                final long[] times = new long[1000];
+                times[0] = 0L;
+                times[1] = -1L;
+                times[2] = -1001L;
+                times[3] = 999L;
+                for (int i = 4; i < times.length; i++) {
+                    // Runs of timestamps in the same second as well as jumps between seconds
+                    times[i] = i % 4 == 0 ? random.nextLong() % 4000000000000L : times[i - 1] + random.nextInt(700);
+                }
+                for (long time : times) {
+                    final StringBuilder builder = new StringBuilder();
+                    formatter.format(time, builder);
+                    Assert.assertEquals(pattern + " " + locale, expected.format(new Date(time)), builder.toString());
+                }
+            }
+        }
+    }
+}
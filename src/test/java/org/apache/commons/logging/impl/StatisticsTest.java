@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.logmanager.Level;
+import org.jboss.logmanager.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the log statistics and the latency recorders.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class StatisticsTest {
+
+    private final Logger rootLogger = Logger.getLogger("");
+
+    private CapturingHandler handler;
+
+    @Before
+    public void setup() {
+        handler = new CapturingHandler();
+        rootLogger.addHandler(handler);
+        rootLogger.setLevel(Level.ALL);
+    }
+
+    @After
+    public void tearDown() {
+        rootLogger.removeHandler(handler);
+        handler.close();
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        final JBossLogFactory logFactory = (JBossLogFactory) LogFactory.getFactory();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(LogStatisticsMXBean.OBJECT_NAME);
+        Assert.assertFalse(server.isRegistered(name));
+        logFactory.setAttribute(JBossLogFactory.STATISTICS_PROPERTY, "true");
+        try {
+            Assert.assertTrue(server.isRegistered(name));
+            server.invoke(name, "reset", null, null);
+            rootLogger.setLevel(Level.INFO);
+            final Log log = LogFactory.getLog(StatisticsTest.class);
+            log.debug("Disabled message");
+            log.info("Test message");
+            log.error("Test message", new IllegalStateException());
+            final LogStatisticsMXBean statistics = logFactory.getStatistics();
+            Assert.assertEquals(1L, statistics.getDebugCalls());
+            Assert.assertEquals(1L, statistics.getInfoCalls());
+            Assert.assertEquals(1L, statistics.getErrorCalls());
+            Assert.assertEquals(0L, statistics.getTraceCalls());
+            Assert.assertEquals(1L, statistics.getDisabledCalls());
+            Assert.assertEquals(1L, statistics.getCallsWithThrowable());
+            Assert.assertEquals(1L, server.getAttribute(name, "DisabledCalls"));
+
+            LogFactory.getLog(StatisticsTest.class.getName() + ".statistics");
+            Assert.assertTrue(statistics.getLoggersCreated() > 0L);
+            statistics.reset();
+            Assert.assertEquals(0L, statistics.getInfoCalls());
+        } finally {
+            logFactory.removeAttribute(JBossLogFactory.STATISTICS_PROPERTY);
+        }
+        Assert.assertFalse(server.isRegistered(name));
+        // Nothing is recorded while statistics are disabled
+        final long created = logFactory.getStatistics().getLoggersCreated();
+        LogFactory.getLog(StatisticsTest.class.getName() + ".disabled");
+        Assert.assertEquals(created, logFactory.getStatistics().getLoggersCreated());
+    }
+
+    @Test
+    public void testLatencyRecorder() {
+        // Recording is disabled unless the system property is set when the class is initialized
+        Assert.assertFalse(LatencyRecorder.ENABLED);
+        Assert.assertTrue(((JBossLogFactory) LogFactory.getFactory()).sampleLatencies().isEmpty());
+
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(i * 1000L);
+        }
+        final long[] counts = new long[LatencyHistogram.BUCKETS];
+        final long sum = recorder.drainTo(counts);
+        final LatencySnapshot snapshot = LatencySnapshot.create("test", "INFO", counts, sum);
+        Assert.assertEquals(1000L, snapshot.getCount());
+        Assert.assertEquals(500500L, snapshot.getMean());
+        assertWithin(500000L, snapshot.getMedian());
+        assertWithin(990000L, snapshot.getPercentile99());
+        assertWithin(1000000L, snapshot.getMax());
+
+        // The next interval starts empty
+        Arrays.fill(counts, 0L);
+        Assert.assertEquals(0L, recorder.drainTo(counts));
+        Assert.assertNull(LatencySnapshot.create("test", "INFO", counts, 0L));
+        recorder.record(100L);
+        Assert.assertEquals(100L, recorder.drainTo(counts));
+
+        // The recorders of a name are found again whether or not they are in the cache
+        final LatencyRecorders recorders = new LatencyRecorders();
+        final String name = "org.example.Latency";
+        final LatencyRecorders.Levels levels = recorders.get(name);
+        Assert.assertSame(levels, recorders.get(name));
+        Assert.assertSame(levels, recorders.get(new String(name)));
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertNotSame(levels, recorders.get(name + i));
+        }
+        Assert.assertSame(levels, recorders.get(name));
+        recorders.clear();
+        Assert.assertNotSame(levels, recorders.get(name));
+        Assert.assertEquals(1, recorders.size());
+    }
+
+    private static void assertWithin(final long expected, final long actual) {
+        // The histogram buckets are accurate to 12.5%
+        Assert.assertTrue(String.format("Expected %d but was %d", expected, actual),
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.logging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads and writes the files used by the tests.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    static void writeFile(final File file, final String text) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    static String gunzip(final File file) throws IOException {
+        return new String(readFully(new GZIPInputStream(new FileInputStream(file))), "UTF-8");
+    }
+
+    static long countTrailingZeros(final File file) throws IOException {
+        final byte[] bytes = readFile(file).getBytes("UTF-8");
+        long count = 0L;
+        for (int i = bytes.length - 1; i >= 0 && bytes[i] == 0; i--) {
+            count++;
+        }
+        return count;
+    }
+
+    static byte[] readFully(final InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[512];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    static String readFile(final File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}